@@ -0,0 +1,49 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.List;
+
+/**
+ Marks the place where the runs of independent filters in everything before it are compiled into
+ AdaptiveFilterRuns, which reorder themselves while the fold runs.
+ @param <T> the type of the items.
+ */
+class AdaptiveFiltersDesc<T> extends TransDesc<T> {
+    final int window;
+    final long period;
+
+    AdaptiveFiltersDesc(TransDesc<T> prev, int w, long p) { super(prev); window = w; period = p; }
+
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        FilterPlanner.makeAdaptive(ret, window, period);
+        return ret;
+    }
+
+    /** Doesn't change the number of items, so it can pass the limit along. */
+    @Override RunList toRunList(long limit) {
+        RunList ret = prevOp.toRunList(limit);
+        FilterPlanner.makeAdaptive(ret, window, period);
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(AdaptiveFiltersDesc.class);
+        parts.add(window);
+        parts.add(period);
+    }
+}
@@ -13,6 +13,8 @@
 
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 /** This should probably be private. */
 class AppendArrayDesc<T> extends TransDesc<T> {
     final SourceProviderArrayDesc<T> src;
@@ -24,4 +26,11 @@ class AppendArrayDesc<T> extends TransDesc<T> {
         RunList ret = prevOp.toRunList();
         return RunList.of(ret, new MutableSource.MutableArraySource<>(src.list, 0));
     }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(AppendArrayDesc.class);
+        parts.add(src.list);
+    }
 }
@@ -13,6 +13,8 @@
 
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 /** This should probably be private. */
 class AppendIterDesc<T> extends TransDesc<T> {
     final SourceProviderIterableDesc<T> src;
@@ -22,6 +24,13 @@ class AppendIterDesc<T> extends TransDesc<T> {
     @SuppressWarnings("unchecked")
     @Override RunList toRunList() {
         RunList ret = prevOp.toRunList();
-        return RunList.of(ret, new MutableSource.MutableIterableSource<>(src.list));
+        return RunList.of(ret, MutableSource.of(src.list));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(AppendIterDesc.class);
+        parts.add(src.list);
     }
 }
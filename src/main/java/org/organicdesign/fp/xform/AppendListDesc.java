@@ -1,5 +1,7 @@
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 /**
  Represents the results of a previous transformation pre-pended to a list of additional items.
  @param <T>
@@ -11,7 +13,7 @@ class AppendListDesc<T> extends TransDesc<T> {
 
     @SuppressWarnings("unchecked")
     @Override RunList toRunList() {
-        MutableSource ms = new MutableSource.MutableListSource<>(src.list, 0);
+        MutableSource ms = MutableSource.of(src.list);
         RunList ret = prevOp.toRunList();
         int i = ret.list.size() - 1;
 //              System.out.println("\tchecking previous items to see if they can handle a drop...");
@@ -29,4 +31,11 @@ class AppendListDesc<T> extends TransDesc<T> {
         }
         return RunList.of(ret, ms);
     }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(AppendListDesc.class);
+        parts.add(src.list);
+    }
 }
@@ -0,0 +1,66 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ Gathers items into an array of up to n, handing the consumer a read-only List view of it each
+ time it fills up.  The same array and view are reused for every batch, so the consumer must
+ copy whatever it wants to keep past the call.  Not thread-safe: parallel folds use one per
+ range.
+ @param <T> the type of the items.
+ */
+final class Batcher<T> {
+    private final Object[] buffer;
+    private final Consumer<? super List<T>> consumer;
+    private int size = 0;
+    private final Batch view = new Batch();
+
+    Batcher(int n, Consumer<? super List<T>> c) { buffer = new Object[n]; consumer = c; }
+
+    /** Adds the item, handing off the batch if that fills it.  Returns this for folding. */
+    Batcher<T> add(T item) {
+        buffer[size] = item;
+        size = size + 1;
+        if (size == buffer.length) { flush(); }
+        return this;
+    }
+
+    /** Hands off whatever is in the batch, if anything.  Returns this for combining. */
+    Batcher<T> flush() {
+        if (size > 0) {
+            consumer.accept(view);
+            // Let go of the items so that they can be garbage collected.
+            Arrays.fill(buffer, 0, size, null);
+            size = 0;
+        }
+        return this;
+    }
+
+    private final class Batch extends AbstractList<T> implements RandomAccess {
+        @SuppressWarnings("unchecked")
+        @Override public T get(int i) {
+            if ( (i < 0) || (i >= size) ) {
+                throw new IndexOutOfBoundsException("Index: " + i + " size: " + size);
+            }
+            return (T) buffer[i];
+        }
+        @Override public int size() { return size; }
+    }
+}
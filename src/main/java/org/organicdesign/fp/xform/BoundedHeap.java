@@ -0,0 +1,135 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Comparator;
+
+/**
+ Keeps the k smallest items offered to it (according to the comparator) in a binary max-heap, so
+ the largest one kept is always on top, ready to be replaced.  Memory is O(k) no matter how many
+ items are offered.  Each item also gets a sequence number, so that of several equal items the
+ earliest are kept and come out first - the same answer as a stable sort followed by take(k).
+ Not thread-safe, but two heaps filled by different threads can be merged.
+ @param <T> the type of the items.
+ */
+final class BoundedHeap<T> {
+    private final int k;
+    private final Comparator<? super T> comp;
+    // Grown as needed, so a big k with few items doesn't allocate k slots.
+    private Object[] items = new Object[16];
+    private long[] seqs = new long[16];
+    private int size = 0;
+    // The number of items offered so far, used for sequence numbers.
+    private long seen = 0;
+
+    BoundedHeap(int max, Comparator<? super T> c) { k = max; comp = c; }
+
+    /** Adds the item if it's among the k smallest offered so far.  Returns this for folding. */
+    BoundedHeap<T> offer(T item) {
+        offer(item, seen);
+        seen = seen + 1;
+        return this;
+    }
+
+    /**
+     Adds everything kept by the other heap (which was filled with items that came after all the
+     items in this heap) to this one.
+     */
+    @SuppressWarnings("unchecked")
+    BoundedHeap<T> merge(BoundedHeap<T> other) {
+        for (int i = 0; i < other.size; i++) {
+            offer((T) other.items[i], seen + other.seqs[i]);
+        }
+        seen = seen + other.seen;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(int i, int j) {
+        int ret = comp.compare((T) items[i], (T) items[j]);
+        return (ret != 0) ? ret : Long.compare(seqs[i], seqs[j]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void offer(T item, long seq) {
+        if (k < 1) { return; }
+        if (size < k) {
+            if (size == items.length) {
+                int newLen = (int) Math.min((long) k, ((long) size) << 1);
+                Object[] newItems = new Object[newLen];
+                long[] newSeqs = new long[newLen];
+                System.arraycopy(items, 0, newItems, 0, size);
+                System.arraycopy(seqs, 0, newSeqs, 0, size);
+                items = newItems;
+                seqs = newSeqs;
+            }
+            items[size] = item;
+            seqs[size] = seq;
+            siftUp(size);
+            size = size + 1;
+            return;
+        }
+        // Bigger than (or tied with, but later than) the biggest we're keeping.
+        int c = comp.compare(item, (T) items[0]);
+        if ( (c > 0) || ((c == 0) && (seq > seqs[0])) ) { return; }
+        items[0] = item;
+        seqs[0] = seq;
+        siftDown(0);
+    }
+
+    private void swap(int i, int j) {
+        Object tempItem = items[i];
+        items[i] = items[j];
+        items[j] = tempItem;
+        long tempSeq = seqs[i];
+        seqs[i] = seqs[j];
+        seqs[j] = tempSeq;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (compare(i, parent) <= 0) { return; }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int biggest = i;
+            int left = (i << 1) + 1;
+            int right = left + 1;
+            if ( (left < size) && (compare(left, biggest) > 0) ) { biggest = left; }
+            if ( (right < size) && (compare(right, biggest) > 0) ) { biggest = right; }
+            if (biggest == i) { return; }
+            swap(i, biggest);
+            i = biggest;
+        }
+    }
+
+    /** Empties the heap into an array sorted from smallest to biggest. */
+    Object[] toSortedArray() {
+        Object[] ret = new Object[size];
+        while (size > 0) {
+            ret[size - 1] = items[0];
+            size = size - 1;
+            items[0] = items[size];
+            seqs[0] = seqs[size];
+            items[size] = null;
+            siftDown(0);
+        }
+        return ret;
+    }
+}
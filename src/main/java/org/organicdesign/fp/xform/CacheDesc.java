@@ -0,0 +1,39 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ Describes a materialization point.  The first fold over this description runs the whole prefix
+ (everything before the cache) into a ChunkedList and stores it in the PrefixCache.  After that,
+ every pipeline built on this description starts from a fresh MutableListSource over the cached
+ items, so drops and takes that follow are done with index arithmetic instead of recomputing the
+ prefix.  The key is this object itself, so only pipelines that share this exact description
+ share the cached items.
+ @param <T> the type of the cached items.
+ */
+class CacheDesc<T> extends TransDesc<T> {
+    private final PrefixCache pool;
+
+    CacheDesc(TransDesc<T> prev, PrefixCache p) { super(prev); pool = p; }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        ChunkedList<T> items = (ChunkedList<T>) pool.get(this);
+        if (items == null) {
+            items = ((TransDesc<T>) prevOp).foldLeft(new ChunkedList<>(), ChunkedList::append);
+            pool.put(this, items);
+        }
+        return RunList.of(null, new MutableSource.MutableListSource<>(items, 0));
+    }
+}
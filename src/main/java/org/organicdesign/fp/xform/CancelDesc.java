@@ -0,0 +1,102 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Describes checking a CancelToken while folding.  The check goes first in the op list of every
+ source (ahead of ops described before it), so it counts every source item, even the ones
+ filtered out.  It passes drops and takes through to the source.
+
+ A sort, join, sample, or cache before this folds its input while it's being compiled, before
+ there's an op list to add the check to.  So while the description before this is compiled, the
+ token is kept in a thread-local, and every fold started on this thread in the meantime (see
+ TransDesc.foldRunList() and ParallelFold.fold()) checks it too.  Only the folds are checked,
+ not the work done on what they gathered, like sorting an array in memory.
+ @param <T> the type of the items.
+ */
+class CancelDesc<T> extends TransDesc<T> {
+    // The tokens of the CancelDescs whose inputs are being compiled on this thread, or null.
+    private static final ThreadLocal<List<CancelToken>> COMPILING = new ThreadLocal<>();
+
+    final CancelToken token;
+
+    CancelDesc(TransDesc<T> prev, CancelToken t) { super(prev); token = t; }
+
+    @Override RunList toRunList() {
+        List<CancelToken> outer = enter();
+        try {
+            return addCheck(prevOp.toRunList(), token);
+        } finally {
+            exit(outer);
+        }
+    }
+
+    @Override RunList toRunList(long limit) {
+        List<CancelToken> outer = enter();
+        try {
+            return addCheck(prevOp.toRunList(limit), token);
+        } finally {
+            exit(outer);
+        }
+    }
+
+    /** Adds this token to the ones being compiled.  Returns the ones there were before. */
+    private List<CancelToken> enter() {
+        List<CancelToken> outer = COMPILING.get();
+        List<CancelToken> inner = (outer == null) ? new ArrayList<>(1) : new ArrayList<>(outer);
+        inner.add(token);
+        COMPILING.set(inner);
+        return outer;
+    }
+
+    private static void exit(List<CancelToken> outer) {
+        if (outer == null) {
+            COMPILING.remove();
+        } else {
+            COMPILING.set(outer);
+        }
+    }
+
+    /** Adds the checks for any tokens whose inputs are being compiled on this thread. */
+    static void checkInnerFold(RunList runList) {
+        List<CancelToken> tokens = COMPILING.get();
+        if (tokens == null) { return; }
+        for (CancelToken t : tokens) { addCheck(runList, t); }
+    }
+
+    private static RunList addCheck(RunList ret, CancelToken t) {
+        OpRun check = new OpRun.CancelRun(t);
+        RunList rl = ret;
+        while (rl.next != null) { rl = rl.next; }
+        for (; rl != null; rl = rl.prev) {
+            // Lists can be shared between sources.  Only add it once to each.
+            if ( ((rl.next == null) || (rl.next.list != rl.list)) && !checks(rl.list, t) ) {
+                rl.list.add(0, check);
+            }
+        }
+        return ret;
+    }
+
+    /** True if the checks at the start of the list already include this token. */
+    private static boolean checks(List<OpRun> list, CancelToken t) {
+        for (OpRun op : list) {
+            if ( !(op instanceof OpRun.CancelRun) ) { return false; }
+            if (((OpRun.CancelRun) op).token == t) { return true; }
+        }
+        return false;
+    }
+}
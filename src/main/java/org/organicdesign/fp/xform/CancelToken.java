@@ -0,0 +1,55 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ Tells folds to stop early (see TransDesc.cancelWith()), either because cancel() was called (from
+ any thread) or because the deadline passed.  Folds check this every so many items, not on every
+ item, so a fold may process up to a thousand or so more items before it notices.
+ */
+public final class CancelToken {
+    private final boolean hasDeadline;
+    // In System.nanoTime() terms.
+    private final long deadline;
+    private volatile boolean cancelled = false;
+
+    private CancelToken(boolean hasDl, long dl) { hasDeadline = hasDl; deadline = dl; }
+
+    /** A token that is only cancelled by calling cancel(). */
+    public static CancelToken of() { return new CancelToken(false, 0); }
+
+    /** A token that cancels itself after the given time from now, or when cancel() is called. */
+    public static CancelToken withTimeout(long amount, TimeUnit unit) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Makes no sense to have a timeout of less than 0");
+        }
+        return new CancelToken(true, System.nanoTime() + unit.toNanos(amount));
+    }
+
+    /** Makes every fold using this token stop with a FoldCancelledException. */
+    public void cancel() { cancelled = true; }
+
+    /** True if cancel() was called or the deadline has passed. */
+    public boolean isCancelled() {
+        if (cancelled) { return true; }
+        // Compare the difference, since nanoTime() can overflow.
+        if (hasDeadline && (System.nanoTime() - deadline >= 0)) {
+            cancelled = true;
+            return true;
+        }
+        return false;
+    }
+}
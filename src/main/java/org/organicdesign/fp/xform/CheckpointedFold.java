@@ -0,0 +1,241 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ Folds a transformation in chunks of source items, saving a checkpoint after each chunk: the
+ number of source items used so far and the accumulator (written by a SpillSerializer).  If the
+ checkpoint file exists when the fold starts, the fold resumes from it instead of from the
+ beginning: List and array sources jump straight to the saved position, other sources skip that
+ many items.  The file is deleted when the fold finishes.
+
+ Every op has to be splittable(), since ops with state of their own (drop or take that couldn't
+ be pushed into the source, distinct, scans...) would need their state saved too.  Folding in
+ chunks then gives the same result as folding all at once.  In the parallel version, each chunk
+ is split into ranges like any parallel fold, so checkpoints are taken between partitions.
+
+ Each checkpoint is written to a temporary file next to the checkpoint file, then moved over it,
+ so a crash while writing leaves the previous checkpoint intact.  Resuming only makes sense with
+ the same transformation over the same source data, so the checkpoint starts with a plan id (see
+ planId()) and the size of the sources, and a fold refuses to resume from one that doesn't
+ match.
+ */
+final class CheckpointedFold {
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private CheckpointedFold() { throw new UnsupportedOperationException("No instantiation"); }
+
+    /** Folds a chunk into the accumulator, returning the new accumulator. */
+    private interface ChunkFolder<B> {
+        B fold(B accum, RunList chunk);
+    }
+
+    static <B> B fold(TransDesc<?> td, B ident, Function2<B,?,B> reducer, Path checkpoint,
+                      long every, SpillSerializer<B> serializer) {
+        return run(td, ident, (accum, chunk) -> TransDesc.foldRunList(chunk, accum, reducer),
+                   checkpoint, every, serializer);
+    }
+
+    static <B> B foldParallel(TransDesc<?> td, Supplier<B> newAccum, Function2<B,?,B> reducer,
+                              Function2<B,B,B> combiner, Path checkpoint, long every,
+                              SpillSerializer<B> serializer) {
+        return run(td, newAccum.get(),
+                   (accum, chunk) -> combiner.apply(accum, ParallelFold.fold(chunk, newAccum,
+                                                                             reducer, combiner)),
+                   checkpoint, every, serializer);
+    }
+
+    /**
+     A 64-bit id for the shape of a transformation that is the same in every JVM, unlike the
+     identities its fingerprint() is usually compared by.  Numbers, Strings, and Classes are used
+     by value.  Sources and functions are used by class, with a lambda's class cut down to the
+     class that declared it, since the rest of a lambda class's name changes from run to run.  So
+     it catches a stale checkpoint from a different pipeline, or different drop, take, or hint
+     values, but not a change inside a lambda.
+     */
+    static long planId(TransDesc<?> td) {
+        List<Object> parts = new ArrayList<>();
+        td.fingerprint(parts);
+        StringBuilder sB = new StringBuilder();
+        for (Object o : parts) {
+            if ( (o == null) || (o instanceof Number) || (o instanceof String) ) {
+                sB.append(o);
+            } else if (o instanceof Class) {
+                sB.append(((Class<?>) o).getName());
+            } else {
+                String name = o.getClass().getName();
+                int lambda = name.indexOf("$$Lambda");
+                sB.append((lambda < 0) ? name : name.substring(0, lambda));
+            }
+            sB.append('\u0000');
+        }
+        return HyperLogLog.hashString(sB.toString());
+    }
+
+    /** The number of items in all the sources, or -1 if any of them don't know. */
+    private static long sourceSize(RunList runList) {
+        long ret = 0;
+        for (RunList rl = runList; rl != null; rl = rl.next) {
+            long size = rl.source.sizeEstimate();
+            if (size < 0) { return -1; }
+            ret = ret + size;
+        }
+        return ret;
+    }
+
+    /** Closes the runlist's resources however the fold ends (see RunList.close()). */
+    private static <B> B run(TransDesc<?> td, B ident, ChunkFolder<B> folder, Path checkpoint,
+                             long every, SpillSerializer<B> serializer) {
+        long planId = planId(td);
+        RunList runList = td.toRunList();
+        try {
+            return runChunks(runList, planId, ident, folder, checkpoint, every, serializer);
+        } finally {
+            runList.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <B> B runChunks(RunList runList, long planId, B ident, ChunkFolder<B> folder,
+                                   Path checkpoint, long every, SpillSerializer<B> serializer) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Must checkpoint every 1 or more items");
+        }
+        while (runList.prev != null) { runList = runList.prev; }
+        for (RunList rl = runList; rl != null; rl = rl.next) {
+            for (OpRun op : rl.list) {
+                if (!op.splittable()) {
+                    throw new IllegalStateException("Can't checkpoint a fold with an op that has" +
+                                                    " state of its own: " + op);
+                }
+            }
+        }
+
+        long size = sourceSize(runList);
+        B accum = ident;
+        long done = 0;
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(checkpoint), IO_BUFFER_SIZE))) {
+                long savedId = in.readLong();
+                long savedSize = in.readLong();
+                if ( (savedId != planId) || (savedSize != size) ) {
+                    throw new IllegalStateException(
+                            "Checkpoint " + checkpoint + " was saved by a different " +
+                            ((savedId != planId) ? "transformation" : "source (size " +
+                                                   savedSize + " instead of " + size + ")") +
+                            ".  Delete it to start over.");
+                }
+                done = in.readLong();
+                accum = serializer.read(in);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Couldn't read checkpoint " + checkpoint, ioe);
+            }
+        }
+
+        long toSkip = done;
+        for (RunList rl = runList; rl != null; rl = rl.next) {
+            OpRun[] ops = rl.opArray();
+            MutableSource src = rl.source;
+            if (src instanceof MutableSource.MutableListSource) {
+                MutableSource.MutableListSource ls = (MutableSource.MutableListSource) src;
+                int skip = (int) Math.min(toSkip, ls.size - ls.idx);
+                ls.idx = ls.idx + skip;
+                toSkip = toSkip - skip;
+                while (ls.idx < ls.size) {
+                    int end = (int) Math.min(ls.size, ls.idx + every);
+                    accum = folder.fold(accum, chunk(ls.subRange(ls.idx, end), ops));
+                    done = done + (end - ls.idx);
+                    ls.idx = end;
+                    save(checkpoint, planId, size, done, accum, serializer);
+                }
+            } else {
+                while ( (toSkip > 0) && src.hasNext() ) {
+                    src.next();
+                    toSkip = toSkip - 1;
+                }
+                while (src.hasNext()) {
+                    Chunk c = new Chunk(src, every);
+                    accum = folder.fold(accum, chunk(MutableSource.of(c), ops));
+                    done = done + c.used;
+                    save(checkpoint, planId, size, done, accum, serializer);
+                }
+            }
+        }
+        try {
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Couldn't delete checkpoint " + checkpoint, ioe);
+        }
+        return accum;
+    }
+
+    private static RunList chunk(MutableSource src, OpRun[] ops) {
+        RunList ret = RunList.of(null, src);
+        for (OpRun op : ops) { ret.list.add(op); }
+        return ret;
+    }
+
+    private static <B> void save(Path checkpoint, long planId, long size, long done, B accum,
+                                 SpillSerializer<B> serializer) {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp), IO_BUFFER_SIZE))) {
+                out.writeLong(planId);
+                out.writeLong(size);
+                out.writeLong(done);
+                serializer.write(accum, out);
+            }
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Couldn't write checkpoint " + checkpoint, ioe);
+        }
+    }
+
+    /** The next (up to) max items of an iterator, counting how many were used. */
+    private static final class Chunk implements Iterable<Object>, Iterator<Object> {
+        private final Iterator<?> items;
+        private final long max;
+        long used = 0;
+
+        Chunk(Iterator<?> i, long m) { items = i; max = m; }
+
+        @Override public Iterator<Object> iterator() { return this; }
+
+        @Override public boolean hasNext() { return (used < max) && items.hasNext(); }
+
+        @Override public Object next() {
+            used = used + 1;
+            return items.next();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ Data stored as columns: parallel long[], double[], and int[] arrays (and EncodedStrings) of the
+ same length, one entry per row.  The where...() methods each return a new Columns over the same
+ arrays with one more predicate on one column.  Predicates are run over whole columns into a
+ bitmap of selected rows (64 rows per long, skipping words where no row is still selected), so a
+ predicate only ever reads its own column, one array after another.  Nothing is done until the
+ rows are needed.
+
+ rows() turns the selected rows into items with a function of the row index, and only then, so
+ the function only reads the columns it needs, and only for rows that made it through every
+ predicate (late materialization).  The result is a list source, so drops and takes after it are
+ index arithmetic, and parallel folds can split it.  count() and the sums never make items at
+ all.
+
+ Filters, grouping, and distinct on an EncodedStrings column work on its int codes: the strings
+ being looked for are encoded once, and the strings of the results are only decoded at the end.
+ The arrays are not copied, so don't change them while this is in use.
+ */
+public final class Columns {
+    /** Clears the bits of the rows in one 64-row word that fail a predicate. */
+    private interface WordFilter {
+        /** @return a word with a bit set for each of the n rows from base that pass. */
+        long keep(int base, int n);
+    }
+
+    private final Object[] columns;
+    private final int numRows;
+    private final WordFilter[] filters;
+
+    private Columns(Object[] cols, int n, WordFilter[] fs) {
+        columns = cols; numRows = n; filters = fs;
+    }
+
+    /**
+     Static factory method: each column must be a long[], double[], int[], or EncodedStrings of
+     the same size.
+     */
+    public static Columns of(Object... columns) {
+        int n = -1;
+        for (Object col : columns) {
+            int len;
+            if (col instanceof long[]) {
+                len = ((long[]) col).length;
+            } else if (col instanceof double[]) {
+                len = ((double[]) col).length;
+            } else if (col instanceof int[]) {
+                len = ((int[]) col).length;
+            } else if (col instanceof EncodedStrings) {
+                len = ((EncodedStrings) col).size();
+            } else {
+                throw new IllegalArgumentException("Columns must be long[], double[], int[], or" +
+                                                   " EncodedStrings, not " + col);
+            }
+            if (n < 0) {
+                n = len;
+            } else if (len != n) {
+                throw new IllegalArgumentException("All columns must be the same size");
+            }
+        }
+        return new Columns(columns.clone(), Math.max(n, 0), new WordFilter[0]);
+    }
+
+    private Columns with(WordFilter f) {
+        WordFilter[] fs = Arrays.copyOf(filters, filters.length + 1);
+        fs[filters.length] = f;
+        return new Columns(columns, numRows, fs);
+    }
+
+    private <T> T column(int col, Class<T> type) {
+        Object ret = columns[col];
+        if (!type.isInstance(ret)) {
+            throw new IllegalArgumentException("Column " + col + " is not a " +
+                                               type.getSimpleName());
+        }
+        return type.cast(ret);
+    }
+
+    /** The number of rows, before any predicates. */
+    public int size() { return numRows; }
+
+    public long getLong(int col, int row) { return column(col, long[].class)[row]; }
+    public double getDouble(int col, int row) { return column(col, double[].class)[row]; }
+    public int getInt(int col, int row) { return column(col, int[].class)[row]; }
+    public String getString(int col, int row) { return column(col, EncodedStrings.class).get(row); }
+
+    /** Keeps only the rows where the long column passes the predicate. */
+    public Columns whereLong(int col, LongPredicate p) {
+        long[] c = column(col, long[].class);
+        return with((base, n) -> {
+            long ret = 0;
+            for (int b = 0; b < n; b++) {
+                if (p.test(c[base + b])) { ret = ret | (1L << b); }
+            }
+            return ret;
+        });
+    }
+
+    /** Keeps only the rows where the double column passes the predicate. */
+    public Columns whereDouble(int col, DoublePredicate p) {
+        double[] c = column(col, double[].class);
+        return with((base, n) -> {
+            long ret = 0;
+            for (int b = 0; b < n; b++) {
+                if (p.test(c[base + b])) { ret = ret | (1L << b); }
+            }
+            return ret;
+        });
+    }
+
+    /** Keeps only the rows where the int column passes the predicate. */
+    public Columns whereInt(int col, IntPredicate p) {
+        int[] c = column(col, int[].class);
+        return with((base, n) -> {
+            long ret = 0;
+            for (int b = 0; b < n; b++) {
+                if (p.test(c[base + b])) { ret = ret | (1L << b); }
+            }
+            return ret;
+        });
+    }
+
+    /** Keeps only the rows where the string column equals the value, comparing codes. */
+    public Columns whereEquals(int col, String value) {
+        EncodedStrings strs = column(col, EncodedStrings.class);
+        int code = strs.dictionary.codeOf(value);
+        int[] c = strs.codes;
+        return with((base, n) -> {
+            long ret = 0;
+            for (int b = 0; b < n; b++) {
+                if (c[base + b] == code) { ret = ret | (1L << b); }
+            }
+            return ret;
+        });
+    }
+
+    /**
+     Keeps only the rows where the string column is one of the values.  The values are looked up
+     in the dictionary once, and each row is then a lookup of its code in a boolean[].
+     */
+    public Columns whereIn(int col, String... values) {
+        EncodedStrings strs = column(col, EncodedStrings.class);
+        boolean[] wanted = new boolean[strs.dictionary.size()];
+        for (String v : values) {
+            int code = strs.dictionary.codeOf(v);
+            if ( (code >= 0) && (code < wanted.length) ) { wanted[code] = true; }
+        }
+        int[] c = strs.codes;
+        return with((base, n) -> {
+            long ret = 0;
+            for (int b = 0; b < n; b++) {
+                if (wanted[c[base + b]]) { ret = ret | (1L << b); }
+            }
+            return ret;
+        });
+    }
+
+    /** The bitmap of selected rows: bit (i & 63) of word (i >> 6) is set if row i is selected. */
+    long[] selection() {
+        long[] words = new long[(numRows + 63) >>> 6];
+        Arrays.fill(words, -1L);
+        if ((numRows & 63) != 0) { words[words.length - 1] = (1L << (numRows & 63)) - 1; }
+        // One whole column at a time.
+        for (WordFilter f : filters) {
+            for (int w = 0; w < words.length; w++) {
+                if (words[w] == 0) { continue; }
+                int base = w << 6;
+                words[w] = words[w] & f.keep(base, Math.min(64, numRows - base));
+            }
+        }
+        return words;
+    }
+
+    /** The indexes of the selected rows, in order. */
+    int[] selectedRows() {
+        long[] words = selection();
+        int count = 0;
+        for (long word : words) { count = count + Long.bitCount(word); }
+        int[] ret = new int[count];
+        int i = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                ret[i] = (w << 6) + Long.numberOfTrailingZeros(word);
+                i = i + 1;
+                word = word & (word - 1);
+            }
+        }
+        return ret;
+    }
+
+    /** The number of selected rows. */
+    public long count() {
+        long ret = 0;
+        for (long word : selection()) { ret = ret + Long.bitCount(word); }
+        return ret;
+    }
+
+    /** The sum of the long column over the selected rows. */
+    public long sumLong(int col) {
+        long[] c = column(col, long[].class);
+        long ret = 0;
+        for (int row : selectedRows()) { ret = ret + c[row]; }
+        return ret;
+    }
+
+    /** The sum of the double column over the selected rows. */
+    public double sumDouble(int col) {
+        double[] c = column(col, double[].class);
+        double ret = 0;
+        for (int row : selectedRows()) { ret = ret + c[row]; }
+        return ret;
+    }
+
+    /** The number of selected rows with each string, counted by code, in code order. */
+    public Map<String,Long> countBy(int col) {
+        EncodedStrings strs = column(col, EncodedStrings.class);
+        long[] counts = new long[strs.dictionary.size()];
+        for (int row : selectedRows()) {
+            int code = strs.codes[row];
+            counts[code] = counts[code] + 1;
+        }
+        return decoded(strs.dictionary, counts, counts);
+    }
+
+    /**
+     The sum of the long column over the selected rows with each string in the key column, summed
+     by code, in code order.
+     */
+    public Map<String,Long> sumLongBy(int keyCol, int col) {
+        EncodedStrings strs = column(keyCol, EncodedStrings.class);
+        long[] c = column(col, long[].class);
+        long[] counts = new long[strs.dictionary.size()];
+        long[] sums = new long[counts.length];
+        for (int row : selectedRows()) {
+            int code = strs.codes[row];
+            counts[code] = counts[code] + 1;
+            sums[code] = sums[code] + c[row];
+        }
+        return decoded(strs.dictionary, counts, sums);
+    }
+
+    /** Decodes the keys that have any rows. */
+    private static Map<String,Long> decoded(StringDictionary dict, long[] counts, long[] vals) {
+        Map<String,Long> ret = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) { ret.put(dict.decode(code), vals[code]); }
+        }
+        return ret;
+    }
+
+    /** The distinct strings of the selected rows, in code order. */
+    public List<String> distinctStrings(int col) {
+        EncodedStrings strs = column(col, EncodedStrings.class);
+        boolean[] seen = new boolean[strs.dictionary.size()];
+        for (int row : selectedRows()) { seen[strs.codes[row]] = true; }
+        List<String> ret = new ArrayList<>();
+        for (int code = 0; code < seen.length; code++) {
+            if (seen[code]) { ret.add(strs.dictionary.decode(code)); }
+        }
+        return ret;
+    }
+
+    /**
+     The selected rows, each made into an item by the function of its row index (use the get...()
+     methods, or the arrays themselves, to read the columns it needs).  Items are made as they are
+     needed, not stored.
+     */
+    public <T> TransDesc<T> rows(IntFunction<? extends T> rowFn) {
+        return new SourceProviderColumnsDesc<>(this, rowFn);
+    }
+}
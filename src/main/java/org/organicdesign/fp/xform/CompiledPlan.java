@@ -0,0 +1,106 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ A transformation compiled once, to be run many times, from any number of threads at once,
+ without locking.  The compiled program (the op arrays, and anything built while compiling, like
+ join tables, Bloom filters, or sorted copies of the source) is shared by every run.  The only
+ state a run has of its own is a new index cursor into each source, so drops and takes pushed
+ into the sources when compiling are kept, plus a new copy of each op with a little state of its
+ own (see OpRun.copyForRun()): a drop or take that couldn't be pushed into a source, a distinct,
+ or a scan.
+
+ That only works when every source is a List or array and every op is splittable() or can be
+ copied.  Anything else (windows, moving sums, merge joins, samples...) has state that's too
+ much to copy, so each run compiles its own, as a plain fold would.  isShared() says which one
+ this is.  Finding that out takes one compile, which is closed right away if it can't be shared
+ (so a sort that spilled to disk deletes its run files before any run sorts again).
+
+ The size of each source List is fixed when compiling, so a List that changes size between runs
+ gives the same results it would have for an iterator that was made when this was compiled.
+ @param <A> the type of the items.
+ */
+public final class CompiledPlan<A> {
+    private final TransDesc<A> desc;
+    // Null when each run compiles its own.
+    private final MutableSource.MutableListSource[] sources;
+    private final OpRun[][] ops;
+
+    CompiledPlan(TransDesc<A> td) {
+        desc = td;
+        RunList rl = td.toRunList();
+        while (rl.prev != null) { rl = rl.prev; }
+        int n = 0;
+        for (RunList r = rl; r != null; r = r.next) {
+            if (!(r.source instanceof MutableSource.MutableListSource)) { n = -1; break; }
+            for (OpRun op : r.list) {
+                if (op.copyForRun() == null) { n = -1; break; }
+            }
+            if (n < 0) { break; }
+            n = n + 1;
+        }
+        if (n < 0) {
+            sources = null;
+            ops = null;
+            // Nothing will fold it, so clean up whatever it holds open now.
+            rl.close();
+        } else {
+            sources = new MutableSource.MutableListSource[n];
+            ops = new OpRun[n][];
+            for (int i = 0; i < n; i++) {
+                sources[i] = (MutableSource.MutableListSource) rl.source;
+                ops[i] = rl.opArray();
+                rl = rl.next;
+            }
+        }
+    }
+
+    /** True if runs share one compiled program, false if each run compiles its own. */
+    public boolean isShared() { return sources != null; }
+
+    /**
+     The compiled program, with a new cursor into each source and new copies of the ops with state
+     (or a whole new compile).  An op that's in more than one source's list (like a distinct after
+     a concat) gets one copy for all of them.
+     */
+    private RunList runList() {
+        if (sources == null) { return desc.toRunList(); }
+        Map<OpRun,OpRun> copies = new IdentityHashMap<>();
+        RunList ret = null;
+        for (int i = 0; i < sources.length; i++) {
+            MutableSource.MutableListSource src = sources[i];
+            ret = RunList.of(ret, src.subRange(src.idx, src.size));
+            for (OpRun op : ops[i]) {
+                OpRun copy = copies.get(op);
+                if (copy == null) {
+                    copy = op.copyForRun();
+                    copies.put(op, copy);
+                }
+                ret.list.add(copy);
+            }
+        }
+        return ret;
+    }
+
+    /** Same as TransDesc.foldLeft(), but safe to call from several threads at once. */
+    public <B> B foldLeft(B ident, Function2<B,? super A,B> reducer) {
+        return TransDesc.foldRunList(runList(), ident, reducer);
+    }
+}
@@ -0,0 +1,92 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ The stack of nested flatMap outputs being worked through, kept in arrays on the heap instead of
+ in stack frames, so nesting depth is limited by memory, not by the thread's stack size.  Each
+ level remembers the op to start its items at.  A random-access List is stepped through with an
+ index instead of an Iterator, and the arrays are reused as levels come and go, so pushing a List
+ allocates nothing.  Not thread-safe.
+ */
+final class CursorStack {
+    /** Returned by next() when the top level is used up. */
+    static final Object END = new Object();
+
+    // For each level, either a RandomAccess List or an Iterator.
+    private Object[] sources = new Object[8];
+    private int[] idxs = new int[8];
+    private int[] sizes = new int[8];
+    private int[] opIdxs = new int[8];
+    private int depth = 0;
+
+    boolean isEmpty() { return depth == 0; }
+
+    /** The index of the op to start the top level's items at. */
+    int opIdx() { return opIdxs[depth - 1]; }
+
+    private void grow() {
+        int len = sources.length << 1;
+        sources = Arrays.copyOf(sources, len);
+        idxs = Arrays.copyOf(idxs, len);
+        sizes = Arrays.copyOf(sizes, len);
+        opIdxs = Arrays.copyOf(opIdxs, len);
+    }
+
+    void push(Iterable items, int opIdx) {
+        if (depth == sources.length) { grow(); }
+        if ( (items instanceof List) && (items instanceof RandomAccess) ) {
+            sources[depth] = items;
+            sizes[depth] = ((List) items).size();
+        } else {
+            sources[depth] = items.iterator();
+            sizes[depth] = -1;
+        }
+        idxs[depth] = 0;
+        opIdxs[depth] = opIdx;
+        depth = depth + 1;
+    }
+
+    /** For a source that is already an iterator (it may have had drops or takes pushed into it). */
+    void pushIterator(Iterator items, int opIdx) {
+        if (depth == sources.length) { grow(); }
+        sources[depth] = items;
+        sizes[depth] = -1;
+        opIdxs[depth] = opIdx;
+        depth = depth + 1;
+    }
+
+    void pop() {
+        depth = depth - 1;
+        sources[depth] = null;
+    }
+
+    /** The next item of the top level, or END if it's used up. */
+    Object next() {
+        int d = depth - 1;
+        if (sizes[d] < 0) {
+            Iterator iter = (Iterator) sources[d];
+            return iter.hasNext() ? iter.next() : END;
+        }
+        int i = idxs[d];
+        if (i >= sizes[d]) { return END; }
+        idxs[d] = i + 1;
+        return ((List) sources[d]).get(i);
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function1;
+
+import java.util.List;
+
+/**
+ Describes a "distinct" operation: only the first item with any given key gets through.  The set
+ of keys seen so far is sized from the estimated number of items in the sources, so it rarely
+ has to grow.  The op goes on every source, so duplicates are removed across concatenations too.
+ @param <T> the type of the items.
+ */
+class DistinctDesc<T> extends TransDesc<T> {
+    // null means the item is its own key.
+    final Function1<? super T,?> keyFn;
+
+    DistinctDesc(TransDesc<T> prev, Function1<? super T,?> k) { super(prev); keyFn = k; }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        ret.addToAll(new OpRun.DistinctRun((Function1<Object,?>) keyFn, ret.sizeEstimate()));
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(DistinctDesc.class);
+        parts.add(keyFn);
+    }
+}
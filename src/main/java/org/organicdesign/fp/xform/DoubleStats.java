@@ -0,0 +1,76 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ Like LongStats, but for doubles.  An empty DoubleStats has a min of positive infinity and a max
+ of negative infinity.  Not thread-safe.
+ */
+public final class DoubleStats {
+    private long count = 0;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double mean = 0;
+    // Sum of squared differences from the mean.
+    private double m2 = 0;
+
+    public void accept(double d) {
+        count = count + 1;
+        sum = sum + d;
+        min = Math.min(min, d);
+        max = Math.max(max, d);
+        double delta = d - mean;
+        mean = mean + delta / count;
+        m2 = m2 + delta * (d - mean);
+    }
+
+    /** Adds the other stats into these ones and returns this. */
+    public DoubleStats combine(DoubleStats other) {
+        if (other.count == 0) { return this; }
+        if (count == 0) {
+            count = other.count; sum = other.sum; min = other.min; max = other.max;
+            mean = other.mean; m2 = other.m2;
+            return this;
+        }
+        long n = count + other.count;
+        double delta = other.mean - mean;
+        mean = mean + delta * other.count / n;
+        m2 = m2 + other.m2 + delta * delta * ((double) count * other.count / n);
+        count = n;
+        sum = sum + other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long count() { return count; }
+    public double sum() { return sum; }
+    public double min() { return min; }
+    public double max() { return max; }
+
+    /** The mean, or NaN if there are no numbers. */
+    public double mean() { return (count == 0) ? Double.NaN : mean; }
+
+    /** The population variance, or NaN if there are no numbers. */
+    public double variance() { return (count == 0) ? Double.NaN : m2 / count; }
+
+    /** The sample variance (divided by count - 1), or NaN if there are fewer than 2 numbers. */
+    public double sampleVariance() { return (count < 2) ? Double.NaN : m2 / (count - 1); }
+
+    @Override public String toString() {
+        return "DoubleStats(count:" + count + ",sum:" + sum + ",min:" + min + ",max:" + max +
+               ",mean:" + mean() + ",variance:" + variance() + ")";
+    }
+}
@@ -13,6 +13,8 @@
 
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 /**
  Describes a "drop" operation.  Drops will be pushed as early in the operation-list as possible,
  ideally being done using one-time pointer addition on the source.  When that is not possible,
@@ -24,10 +26,17 @@ class DropDesc<T> extends TransDesc<T> {
     private final long drop;
     DropDesc(TransDesc<T> prev, long d) { super(prev); drop = d; }
 
-    @SuppressWarnings("unchecked")
-    @Override RunList toRunList() {
+    @Override RunList toRunList() { return addDrop(prevOp.toRunList()); }
+
+    /** If only limit items are needed after the drop, then only drop + limit are needed before. */
+    @Override RunList toRunList(long limit) {
+        long prevLimit = drop + limit;
+        // Overflow means "all of them"
+        return addDrop(prevOp.toRunList((prevLimit < 0) ? Long.MAX_VALUE : prevLimit));
+    }
+
+    private RunList addDrop(RunList ret) {
 //                System.out.println("in toRunList() for drop");
-        RunList ret = prevOp.toRunList();
         int i = ret.list.size() - 1;
 //              System.out.println("\tchecking previous items to see if they can handle a drop...");
         OpStrategy earlierDs = null;
@@ -54,4 +63,11 @@ class DropDesc<T> extends TransDesc<T> {
         ret.list.add(new OpRun.DropRun(drop));
         return ret;
     }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(DropDesc.class);
+        parts.add(drop);
+    }
 }
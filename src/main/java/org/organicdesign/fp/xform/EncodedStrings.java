@@ -0,0 +1,65 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ A column of strings stored as int codes from a StringDictionary.  Use it as a column of Columns
+ to filter, group, and count by the codes, or stream it with strings(), which only decodes each
+ string as it's read.
+ */
+public final class EncodedStrings {
+    final int[] codes;
+    final StringDictionary dictionary;
+
+    private EncodedStrings(int[] c, StringDictionary d) { codes = c; dictionary = d; }
+
+    /** Encodes the strings with a new dictionary. */
+    public static EncodedStrings encode(Iterable<String> strings) {
+        return encode(strings, StringDictionary.of());
+    }
+
+    /** Encodes the strings with the given dictionary, adding any strings it doesn't have yet. */
+    public static EncodedStrings encode(Iterable<String> strings, StringDictionary dictionary) {
+        int[] codes = new int[16];
+        int n = 0;
+        for (String s : strings) {
+            if (n == codes.length) { codes = Arrays.copyOf(codes, n << 1); }
+            codes[n] = dictionary.encode(s);
+            n = n + 1;
+        }
+        return new EncodedStrings(Arrays.copyOf(codes, n), dictionary);
+    }
+
+    public StringDictionary dictionary() { return dictionary; }
+
+    public int size() { return codes.length; }
+
+    public int code(int row) { return codes[row]; }
+
+    public String get(int row) { return dictionary.decode(codes[row]); }
+
+    /** The strings, decoded as they're read.  A list source, so drops and takes are cheap. */
+    public TransDesc<String> strings() {
+        return TransDesc.from(new Decoded());
+    }
+
+    private final class Decoded extends AbstractList<String> implements RandomAccess {
+        @Override public String get(int i) { return dictionary.decode(codes[i]); }
+        @Override public int size() { return codes.length; }
+    }
+}
@@ -0,0 +1,295 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ A sort that holds at most maxInMemory items on the heap.  Items are added to a buffer; each time
+ it fills up, it's sorted and written to a temporary file (a "run") through a buffered
+ FileChannel.  When all the items are in, the runs are merged back together with a priority
+ queue of one reader per run.  Each reader has an open file and a buffer, so at most MAX_FAN_IN
+ runs are merged at once: if there are more, groups of neighboring runs are first merged into
+ longer runs on disk, in as many passes as it takes.  The last, partial buffer is never written
+ out - it's merged straight from memory.  If nothing was spilled, this is just an in-memory sort.
+ Runs come from the input in order, and merging neighbors keeps them in order, so breaking ties
+ by run number makes the whole sort stable.
+
+ Each run file is deleted as soon as it has been read.  close() closes and deletes all the run
+ files that are left, for when a take() stopped the merge early or something threw.  The fold
+ that reads the merge calls it (see RunList.close()).
+ Not thread-safe.
+ @param <T> the type of the items.
+ */
+final class ExternalSort<T> implements Closeable {
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    // The most runs merged at once.  Thousands at once would run out of file descriptors.
+    static final int MAX_FAN_IN = 64;
+
+    private final Comparator<? super T> comp;
+    private final SpillSerializer<T> serializer;
+    private final Object[] buffer;
+    private int numBuffered = 0;
+    // The runs to merge next.
+    private final List<Path> runFiles = new ArrayList<>();
+    private final List<Long> runSizes = new ArrayList<>();
+    // Every run file made so far that may not be deleted yet, for close().
+    private final List<Path> tmpFiles = new ArrayList<>();
+    private final List<FileRun<T>> openRuns = new ArrayList<>();
+
+    ExternalSort(Comparator<? super T> c, SpillSerializer<T> s, int maxInMemory) {
+        if (maxInMemory < 1) {
+            throw new IllegalArgumentException("Must be able to hold at least 1 item in memory");
+        }
+        comp = c; serializer = s; buffer = new Object[maxInMemory];
+    }
+
+    /** Adds an item, spilling to disk if the buffer is full.  Returns this for folding. */
+    ExternalSort<T> add(T item) {
+        if (numBuffered == buffer.length) { spill(); }
+        buffer[numBuffered] = item;
+        numBuffered = numBuffered + 1;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sortBuffer() { Arrays.sort((T[]) buffer, 0, numBuffered, comp); }
+
+    @SuppressWarnings("unchecked")
+    private void spill() {
+        sortBuffer();
+        try {
+            Path path = newRunFile();
+            runFiles.add(path);
+            try (DataOutputStream out = writer(path)) {
+                for (int i = 0; i < numBuffered; i++) {
+                    serializer.write((T) buffer[i], out);
+                }
+            }
+            runSizes.add((long) numBuffered);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Couldn't spill a sorted run to disk", ioe);
+        }
+        Arrays.fill(buffer, 0, numBuffered, null);
+        numBuffered = 0;
+    }
+
+    /** True if everything fit in memory, so sortedInMemory() can be used instead of merge(). */
+    boolean fitInMemory() { return runFiles.isEmpty(); }
+
+    /** Only call this if fitInMemory().  Returns the sorted items. */
+    Object[] sortedInMemory() {
+        sortBuffer();
+        return Arrays.copyOf(buffer, numBuffered);
+    }
+
+    /** Made before it's written to, so close() deletes it even if the write fails. */
+    private Path newRunFile() throws IOException {
+        Path path = Files.createTempFile("TransDescSort", ".run");
+        tmpFiles.add(path);
+        return path;
+    }
+
+    private static DataOutputStream writer(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+                FileChannel.open(path, StandardOpenOption.WRITE)), IO_BUFFER_SIZE));
+    }
+
+    private PriorityQueue<Run<T>> newQueue(int size) {
+        return new PriorityQueue<>(size, (r1, r2) -> {
+            int ret = comp.compare(r1.head, r2.head);
+            return (ret != 0) ? ret : Integer.compare(r1.runNum, r2.runNum);
+        });
+    }
+
+    /** Opens runs from (inclusive) to to (exclusive) and puts the ones with items in the queue. */
+    private void openRuns(int from, int to, PriorityQueue<Run<T>> queue) {
+        for (int i = from; i < to; i++) {
+            FileRun<T> run = new FileRun<>(i, runFiles.get(i), runSizes.get(i), serializer);
+            openRuns.add(run);
+            if (run.advance()) { queue.add(run); }
+        }
+    }
+
+    /** Merges each group of MAX_FAN_IN neighboring runs into one longer run. */
+    private void mergePass() {
+        List<Path> files = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        for (int from = 0; from < runFiles.size(); from = from + MAX_FAN_IN) {
+            int to = Math.min(runFiles.size(), from + MAX_FAN_IN);
+            if (to - from == 1) {
+                files.add(runFiles.get(from));
+                sizes.add(runSizes.get(from));
+                continue;
+            }
+            PriorityQueue<Run<T>> queue = newQueue(to - from);
+            openRuns(from, to, queue);
+            long size = 0;
+            try {
+                Path path = newRunFile();
+                files.add(path);
+                try (DataOutputStream out = writer(path)) {
+                    Run<T> run;
+                    while ((run = queue.poll()) != null) {
+                        serializer.write(run.head, out);
+                        size = size + 1;
+                        if (run.advance()) { queue.add(run); }
+                    }
+                }
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Couldn't merge sorted runs on disk", ioe);
+            }
+            sizes.add(size);
+            // Each was read to the end, which closed and deleted it.
+            openRuns.clear();
+        }
+        runFiles.clear();
+        runFiles.addAll(files);
+        runSizes.clear();
+        runSizes.addAll(sizes);
+    }
+
+    /** Streams all the items back in sorted order, merging the runs as it goes. */
+    Iterator<T> merge() {
+        sortBuffer();
+        while (runFiles.size() > MAX_FAN_IN) { mergePass(); }
+        PriorityQueue<Run<T>> queue = newQueue(runFiles.size() + 1);
+        openRuns(0, runFiles.size(), queue);
+        Run<T> memRun = new MemoryRun<>(runFiles.size(), Arrays.copyOf(buffer, numBuffered));
+        if (memRun.advance()) { queue.add(memRun); }
+
+        return new Iterator<T>() {
+            @Override public boolean hasNext() { return !queue.isEmpty(); }
+
+            @Override public T next() {
+                Run<T> run = queue.poll();
+                if (run == null) { throw new NoSuchElementException(); }
+                T ret = run.head;
+                if (run.advance()) { queue.add(run); }
+                return ret;
+            }
+        };
+    }
+
+    /**
+     Closes any run files still being read and deletes every run file that's left.  Safe to call
+     more than once, and after the merge finished.
+     */
+    @Override public void close() {
+        IOException failure = null;
+        for (FileRun<T> run : openRuns) {
+            try {
+                run.close();
+            } catch (IOException ioe) {
+                if (failure == null) { failure = ioe; }
+            }
+        }
+        openRuns.clear();
+        for (Path path : tmpFiles) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ioe) {
+                if (failure == null) { failure = ioe; }
+            }
+        }
+        tmpFiles.clear();
+        runFiles.clear();
+        runSizes.clear();
+        if (failure != null) {
+            throw new UncheckedIOException("Couldn't clean up sorted runs", failure);
+        }
+    }
+
+    /** One sorted run being merged.  head is the next item from it. */
+    private abstract static class Run<T> {
+        final int runNum;
+        T head;
+        Run(int n) { runNum = n; }
+        /** Moves the next item into head.  Returns false (and cleans up) if there isn't one. */
+        abstract boolean advance();
+    }
+
+    private static final class MemoryRun<T> extends Run<T> {
+        private final Object[] items;
+        private int idx = 0;
+        MemoryRun(int n, Object[] is) { super(n); items = is; }
+
+        @SuppressWarnings("unchecked")
+        @Override boolean advance() {
+            if (idx >= items.length) { return false; }
+            head = (T) items[idx];
+            idx = idx + 1;
+            return true;
+        }
+    }
+
+    private static final class FileRun<T> extends Run<T> {
+        private final Path path;
+        private final SpillSerializer<T> serializer;
+        private long numLeft;
+        private DataInputStream in = null;
+
+        FileRun(int n, Path p, long size, SpillSerializer<T> s) {
+            super(n); path = p; numLeft = size; serializer = s;
+        }
+
+        void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+            Files.deleteIfExists(path);
+        }
+
+        @Override boolean advance() {
+            try {
+                if (numLeft == 0) {
+                    close();
+                    head = null;
+                    return false;
+                }
+                if (in == null) {
+                    in = new DataInputStream(new BufferedInputStream(
+                            Channels.newInputStream(FileChannel.open(path,
+                                                                     StandardOpenOption.READ)),
+                            IO_BUFFER_SIZE));
+                }
+                head = serializer.read(in);
+                numLeft = numLeft - 1;
+                return true;
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Couldn't read a sorted run back from " + path,
+                                               ioe);
+            }
+        }
+    }
+}
@@ -15,15 +15,64 @@ package org.organicdesign.fp.xform;
 
 import org.organicdesign.fp.function.Function1;
 
+import java.util.List;
+
+/**
+ Describes a filter.  With a declared cost and selectivity, it is independent, and it is moved
+ ahead of the independent filters just before it that have a higher rank (see FilterPlanner) as
+ it's added.  The filter is either a
+ Function1 returning Boolean (wrapped in an ObjPredicate when compiled) or an ObjPredicate.
+ @param <T> the type of the items.
+ */
 class FilterDesc<T> extends TransDesc<T> {
+    // Exactly one of these is set.
     final Function1<? super T,Boolean> f;
+    final ObjPredicate<? super T> p;
+    // Negative when not declared.
+    final double cost;
+    final double selectivity;
+    // May be measured and reordered with the independent filters next to it (see FilterRun).
+    final boolean independent;
+
+    FilterDesc(TransDesc<T> prev, Function1<? super T,Boolean> func, double c, double s,
+               boolean indep) {
+        super(prev); f = func; p = null; cost = c; selectivity = s; independent = indep;
+    }
 
-    FilterDesc(TransDesc<T> prev, Function1<? super T,Boolean> func) { super(prev); f = func; }
+    FilterDesc(TransDesc<T> prev, Function1<? super T,Boolean> func, double c, double s) {
+        this(prev, func, c, s, true);
+    }
+
+    FilterDesc(TransDesc<T> prev, Function1<? super T,Boolean> func) {
+        this(prev, func, -1, -1, false);
+    }
+
+    FilterDesc(TransDesc<T> prev, ObjPredicate<? super T> pred) {
+        super(prev); f = null; p = pred; cost = -1; selectivity = -1; independent = false;
+    }
 
     @SuppressWarnings("unchecked")
     @Override RunList toRunList() {
         RunList ret = prevOp.toRunList();
-        ret.list.add(new OpRun.FilterRun((Function1<Object,Boolean>) f));
+        ObjPredicate<Object> pred;
+        if (p != null) {
+            pred = (ObjPredicate<Object>) p;
+        } else {
+            Function1<Object,Boolean> func = (Function1<Object,Boolean>) f;
+            pred = func::apply;
+        }
+        ret.list.add(new OpRun.FilterRun(pred, cost, selectivity, independent));
+        if (cost >= 0) { FilterPlanner.insertHinted(ret.list); }
         return ret;
     }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(FilterDesc.class);
+        parts.add((p != null) ? p : f);
+        parts.add(cost);
+        parts.add(selectivity);
+        parts.add(independent);
+    }
 }
@@ -0,0 +1,177 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ Puts runs of consecutive independent filters (FilterRuns declared safe to call on any item) in
+ the cheapest order.  A filter that isn't independent is a barrier: it's never measured or
+ moved, and nothing moves past it, so a guard like s != null always runs before the filters
+ that depend on it.  A filter
+ that costs c per call and lets through the fraction s of items should go before another when its
+ rank c / (1 - s) is lower: cheap filters that throw most items away go first, so the expensive
+ ones see fewer items.  Filters without a known cost and selectivity can be measured on a sample
+ of an indexed source.  A run with any filter that can't be estimated is left alone, and filters
+ of equal rank keep the order they were written in.
+ */
+final class FilterPlanner {
+    // Measuring only pays when the source is much bigger than the sample.
+    static final int SAMPLE_SIZE = 256;
+    static final int MIN_SOURCE_TO_MEASURE = 16 * 1024;
+
+    private FilterPlanner() { throw new UnsupportedOperationException("No instantiation"); }
+
+    static double rank(OpRun.FilterRun f) {
+        return f.cost / Math.max(1e-9, 1 - f.selectivity);
+    }
+
+    private static boolean known(OpRun.FilterRun f) {
+        return (f.cost >= 0) && (f.selectivity >= 0);
+    }
+
+    private static final Comparator<OpRun.FilterRun> BY_RANK =
+            (a, b) -> Double.compare(rank(a), rank(b));
+
+    /**
+     Moves the filter at the end of the list back past any filters before it with a higher rank.
+     Called as each filter with declared hints is added, this keeps runs of hinted filters in
+     order without ever measuring anything.
+     */
+    static void insertHinted(List<OpRun> list) {
+        int i = list.size() - 1;
+        OpRun.FilterRun f = (OpRun.FilterRun) list.get(i);
+        while (isIndependent(list, i - 1)) {
+            OpRun.FilterRun prev = (OpRun.FilterRun) list.get(i - 1);
+            if (!known(prev) || (rank(prev) <= rank(f))) { break; }
+            list.set(i, prev);
+            i = i - 1;
+        }
+        list.set(i, f);
+    }
+
+    /**
+     Reorders every run of filters in every source's op list, measuring unhinted filters that
+     come first in the list of a big enough indexed source.
+     */
+    static void reorder(RunList runList) {
+        RunList rl = runList;
+        while (rl != null) {
+            // Some sources share a list.  Only do each list once.
+            if ( (rl.next == null) || (rl.next.list != rl.list) ) { reorder(rl.list, rl.source); }
+            rl = rl.prev;
+        }
+    }
+
+    private static void reorder(List<OpRun> list, MutableSource source) {
+        int i = 0;
+        while ((i = nextRun(list, i)) >= 0) {
+            List<OpRun.FilterRun> run = runAt(list, i);
+            if ( (i == 0) && !measure(run, source) ) {
+                i = i + run.size();
+                continue;
+            }
+            boolean allKnown = true;
+            for (OpRun.FilterRun f : run) { allKnown = allKnown && known(f); }
+            if (allKnown) {
+                // Collections.sort() is stable.
+                Collections.sort(run, BY_RANK);
+                for (int j = 0; j < run.size(); j++) { list.set(i + j, run.get(j)); }
+            }
+            i = i + run.size();
+        }
+    }
+
+    /**
+     Replaces every run of independent filters in every source's op list with an
+     AdaptiveFilterRun that measures and reorders them as it goes.  Other filters stay where they
+     are and end the runs, like any other op.
+     */
+    static void makeAdaptive(RunList runList, int window, long period) {
+        RunList rl = runList;
+        while (rl != null) {
+            if ( (rl.next == null) || (rl.next.list != rl.list) ) {
+                List<OpRun> list = rl.list;
+                int i = 0;
+                while ((i = nextRun(list, i)) >= 0) {
+                    List<OpRun.FilterRun> run = runAt(list, i);
+                    list.subList(i, i + run.size()).clear();
+                    list.add(i, new OpRun.AdaptiveFilterRun(run, window, period));
+                    i = i + 1;
+                }
+            }
+            rl = rl.prev;
+        }
+    }
+
+    private static boolean isFilter(List<OpRun> list, int i) {
+        return (i >= 0) && (i < list.size()) && (list.get(i).getClass() == OpRun.FilterRun.class);
+    }
+
+    private static boolean isIndependent(List<OpRun> list, int i) {
+        return isFilter(list, i) && ((OpRun.FilterRun) list.get(i)).independent;
+    }
+
+    /** The start of the first run of two or more independent FilterRuns at or after i, or -1. */
+    private static int nextRun(List<OpRun> list, int i) {
+        for (; i < list.size() - 1; i++) {
+            if (isIndependent(list, i) && isIndependent(list, i + 1)) { return i; }
+        }
+        return -1;
+    }
+
+    /** The run of independent FilterRuns starting at index i. */
+    private static List<OpRun.FilterRun> runAt(List<OpRun> list, int i) {
+        List<OpRun.FilterRun> run = new ArrayList<>();
+        for (; isIndependent(list, i); i++) { run.add((OpRun.FilterRun) list.get(i)); }
+        return run;
+    }
+
+    /**
+     Times each unknown filter on evenly spaced items of the source, if it's indexed and big.
+     Returns false, leaving the filters unknown, if one of them throws: it wasn't really safe to
+     call on any item, so the run has to stay in the order written.
+     */
+    private static boolean measure(List<OpRun.FilterRun> run, MutableSource source) {
+        if ( !(source instanceof MutableSource.MutableListSource) ) { return true; }
+        MutableSource.MutableListSource src = (MutableSource.MutableListSource) source;
+        int numItems = src.size - src.idx;
+        if (numItems < MIN_SOURCE_TO_MEASURE) { return true; }
+        int stride = numItems / SAMPLE_SIZE;
+        List<OpRun.FilterRun> measured = new ArrayList<>();
+        for (OpRun.FilterRun f : run) {
+            if (known(f)) { continue; }
+            int passed = 0;
+            long start = System.nanoTime();
+            try {
+                for (int j = 0; j < SAMPLE_SIZE; j++) {
+                    if (f.filter.test(src.get(src.idx + j * stride))) { passed = passed + 1; }
+                }
+            } catch (RuntimeException e) {
+                for (OpRun.FilterRun m : measured) {
+                    m.cost = -1;
+                    m.selectivity = -1;
+                }
+                return false;
+            }
+            f.cost = (double) (System.nanoTime() - start) / SAMPLE_SIZE;
+            f.selectivity = (double) passed / SAMPLE_SIZE;
+            measured.add(f);
+        }
+        return true;
+    }
+}
@@ -15,6 +15,8 @@ package org.organicdesign.fp.xform;
 
 import org.organicdesign.fp.function.Function1;
 
+import java.util.List;
+
 class FlatMapDesc<T,U> extends TransDesc<U> {
     final Function1<? super T,Iterable<U>> f;
     FlatMapDesc(TransDesc<T> prev, Function1<? super T,Iterable<U>> func) {
@@ -27,4 +29,11 @@ class FlatMapDesc<T,U> extends TransDesc<U> {
         ret.list.add(new OpRun.FlatMapRun((Function1) f));
         return ret;
     }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(FlatMapDesc.class);
+        parts.add(f);
+    }
 }
@@ -0,0 +1,26 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ Thrown out of a fold when its CancelToken was cancelled or its deadline passed.  In a parallel
+ fold, each range stops at its own next check, and this is thrown as soon as one of them has
+ stopped, so the others may still be running (for up to about a thousand more items each) when
+ it's caught.
+ */
+public class FoldCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public FoldCancelledException(String message) { super(message); }
+}
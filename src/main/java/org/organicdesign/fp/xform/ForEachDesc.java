@@ -0,0 +1,44 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function1;
+
+import java.util.List;
+
+/**
+ Describes calling a function on each item for its side effects.  This used to be a FilterDesc,
+ but filters can be reordered by the planner now, and side effects have to happen in the order
+ they were written.
+ @param <T> the type of the items.
+ */
+class ForEachDesc<T> extends TransDesc<T> {
+    final Function1<? super T,?> f;
+
+    ForEachDesc(TransDesc<T> prev, Function1<? super T,?> func) { super(prev); f = func; }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        ret.list.add(new OpRun.ForEachRun((Function1<Object,?>) f));
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(ForEachDesc.class);
+        parts.add(f);
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ Estimates the number of distinct items in constant memory (16K one-byte registers), with a
+ standard error of about 0.8%.  Each item is hashed to 64 bits.  The first 14 bits pick a
+ register, which remembers the longest run of leading zeros seen in the rest of the bits.  Long,
+ Integer, and Double are hashed from their values directly, and Strings from their chars.
+ Anything else is hashed from its hashCode(), so items whose hashCodes are equal count as one.
+ Two sketches filled by different threads can be merged.  Not thread-safe.
+ */
+final class HyperLogLog {
+    private static final int P = 14;
+    private static final int M = 1 << P;
+    // The bias correction constant for M registers.
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private final byte[] registers = new byte[M];
+
+    /** Finalizer from MurmurHash3, for spreading the bits of a number across all 64. */
+    static long mix64(long l) {
+        l = (l ^ (l >>> 33)) * 0xff51afd7ed558ccdL;
+        l = (l ^ (l >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return l ^ (l >>> 33);
+    }
+
+    /**
+     A 64-bit hash of the chars of the string, four at a time, in the style of MurmurHash3.  With
+     only the 32 bits of hashCode(), a hundred million distinct strings would have about a
+     million collisions.
+     */
+    static long hashString(String s) {
+        long h = 0x9368e53c2f6af274L;
+        int len = s.length();
+        int i = 0;
+        for (; i + 4 <= len; i = i + 4) {
+            long k = s.charAt(i) | ((long) s.charAt(i + 1) << 16) |
+                     ((long) s.charAt(i + 2) << 32) | ((long) s.charAt(i + 3) << 48);
+            k = Long.rotateLeft(k * 0x87c37b91114253d5L, 31) * 0x4cf5ad432745937fL;
+            h = Long.rotateLeft(h ^ k, 27) * 5 + 0x52dce729;
+        }
+        long k = 0;
+        for (int shift = 0; i < len; i++, shift = shift + 16) {
+            k = k | ((long) s.charAt(i) << shift);
+        }
+        k = Long.rotateLeft(k * 0x87c37b91114253d5L, 31) * 0x4cf5ad432745937fL;
+        return h ^ k ^ len;
+    }
+
+    /**
+     A 64-bit hash of the item: by value for Long, Integer, and Double, by chars for String,
+     otherwise by hashCode().  Equal items always have equal hashes.
+     */
+    static long hash(Object o) {
+        long h;
+        if (o instanceof String) {
+            h = hashString((String) o);
+        } else if (o instanceof Long) {
+            h = (Long) o;
+        } else if (o instanceof Integer) {
+            h = (Integer) o;
+        } else if (o instanceof Double) {
+            h = Double.doubleToLongBits((Double) o);
+        } else {
+            // Different from the numbers, so that "null" and 0 aren't the same item.
+            h = (o == null) ? 0x9e3779b97f4a7c15L : ((long) o.hashCode()) ^ 0x9e3779b97f4a7c15L;
+        }
+        return mix64(h);
+    }
+
+    /** Counts the item.  Returns this for folding. */
+    HyperLogLog offer(Object o) {
+        long h = hash(o);
+        int i = (int) (h >>> (64 - P));
+        // A sentinel bit guarantees the rest is never all zeros.
+        byte rank = (byte) (Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1);
+        if (rank > registers[i]) { registers[i] = rank; }
+        return this;
+    }
+
+    /** Adds what the other sketch has seen to this one.  Returns this for combining. */
+    HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < M; i++) {
+            if (other.registers[i] > registers[i]) { registers[i] = other.registers[i]; }
+        }
+        return this;
+    }
+
+    /** The estimated number of distinct items offered. */
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum = sum + Double.longBitsToDouble((1023L - r) << 52); // 2^-r
+            if (r == 0) { zeros = zeros + 1; }
+        }
+        double est = ALPHA * M * M / sum;
+        // For small counts, linear counting of the empty registers is more accurate.
+        if ( (est <= 2.5 * M) && (zeros > 0) ) {
+            est = M * Math.log((double) M / zeros);
+        }
+        return Math.round(est);
+    }
+}
@@ -0,0 +1,155 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ Describes taking one item at a time from each of several transformations in turn.  When one runs
+ out, the rest carry on without it.
+
+ When every one compiles to a bare List or array source, the output is a random-access view that
+ works out which list and index each position comes from, so (as with ZipDesc) drops and takes
+ after it are index arithmetic.  Otherwise, they are pulled through RunListIterators in turn,
+ and the fold closes them all when it's done, even if a take stopped it early.
+ @param <T> the type of the items.
+ */
+class InterleaveDesc<T> extends TransDesc<T> {
+    final TransDesc<? extends T>[] others;
+
+    InterleaveDesc(TransDesc<T> prev, TransDesc<? extends T>[] os) { super(prev); others = os; }
+
+    @Override RunList toRunList() {
+        RunList[] rls = new RunList[others.length + 1];
+        rls[0] = prevOp.toRunList();
+        for (int i = 0; i < others.length; i++) { rls[i + 1] = others[i].toRunList(); }
+
+        List<List<Object>> lists = new ArrayList<>(rls.length);
+        for (RunList rl : rls) {
+            List<Object> ls = ZipDesc.indexed(rl);
+            if (ls == null) {
+                lists = null;
+                break;
+            }
+            lists.add(ls);
+        }
+        if (lists != null) {
+            return RunList.of(null, new MutableSource.MutableListSource<>(new Interleaved(lists),
+                                                                          0));
+        }
+        Iterable<Object> interleaved = () -> new RoundRobin(rls);
+        RunList ret = RunList.of(null, new MutableSource.MutableIterableSource<>(interleaved));
+        ret.resource = RunList.closing(rls);
+        return ret;
+    }
+
+    /** Pulls from each runlist in turn, dropping the used-up ones. */
+    private static final class RoundRobin implements Iterator<Object> {
+        private final List<Iterator<Object>> iters;
+        private int i = 0;
+
+        RoundRobin(RunList[] rls) {
+            iters = new ArrayList<>(rls.length);
+            for (RunList rl : rls) { iters.add(new RunListIterator(rl)); }
+        }
+
+        // Moves i to the next iterator with an item.
+        @Override public boolean hasNext() {
+            while (!iters.isEmpty()) {
+                if (i >= iters.size()) { i = 0; }
+                if (iters.get(i).hasNext()) { return true; }
+                iters.remove(i);
+            }
+            return false;
+        }
+
+        @Override public Object next() {
+            if (!hasNext()) { throw new NoSuchElementException("No more items"); }
+            Object ret = iters.get(i).next();
+            i = i + 1;
+            return ret;
+        }
+    }
+
+    /**
+     Round-robin over lists of different sizes.  Positions come in stages: until the shortest
+     list runs out, each round has an item from every list, then one less list, and so on.
+     */
+    private static final class Interleaved extends AbstractList<Object> implements RandomAccess {
+        private final List<List<Object>> lists;
+        // For each stage: its first position, the index in each list that it starts at, and which
+        // lists are still going.
+        private final int[] stageStarts;
+        private final int[] stageRounds;
+        private final int[][] stageLists;
+        private final int size;
+
+        Interleaved(List<List<Object>> ls) {
+            lists = ls;
+            List<Integer> active = new ArrayList<>();
+            for (int i = 0; i < ls.size(); i++) {
+                if (!ls.get(i).isEmpty()) { active.add(i); }
+            }
+            List<int[]> stageInfo = new ArrayList<>();
+            List<int[]> stageActive = new ArrayList<>();
+            int pos = 0;
+            int round = 0;
+            while (!active.isEmpty()) {
+                int minLen = Integer.MAX_VALUE;
+                for (int i : active) { minLen = Math.min(minLen, ls.get(i).size()); }
+                int[] act = new int[active.size()];
+                for (int j = 0; j < act.length; j++) { act[j] = active.get(j); }
+                stageInfo.add(new int[] { pos, round });
+                stageActive.add(act);
+                pos = pos + (minLen - round) * act.length;
+                round = minLen;
+                final int done = minLen;
+                active.removeIf(i -> ls.get(i).size() == done);
+            }
+            size = pos;
+            stageStarts = new int[stageInfo.size()];
+            stageRounds = new int[stageInfo.size()];
+            stageLists = stageActive.toArray(new int[stageActive.size()][]);
+            for (int s = 0; s < stageStarts.length; s++) {
+                stageStarts[s] = stageInfo.get(s)[0];
+                stageRounds[s] = stageInfo.get(s)[1];
+            }
+        }
+
+        @Override public Object get(int i) {
+            if ( (i < 0) || (i >= size) ) {
+                throw new IndexOutOfBoundsException("Index: " + i + " size: " + size);
+            }
+            int s = stageStarts.length - 1;
+            while (stageStarts[s] > i) { s = s - 1; }
+            int offset = i - stageStarts[s];
+            int[] act = stageLists[s];
+            return lists.get(act[offset % act.length]).get(stageRounds[s] + offset / act.length);
+        }
+
+        @Override public int size() { return size; }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(InterleaveDesc.class);
+        for (TransDesc<? extends T> other : others) { other.fingerprint(parts); }
+    }
+}
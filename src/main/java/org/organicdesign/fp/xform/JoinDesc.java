@@ -0,0 +1,157 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function1;
+import org.organicdesign.fp.function.Function2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ Describes an inner join of this transformation (the left side) with another (the right side).
+ Items with null keys never match anything.
+
+ With no key comparator, this is a hash join.  Whichever side has the smaller size estimate is
+ folded into a hash table of key to items (the "build" side).  The other side (the "probe" side)
+ is compiled as usual, with one more op added to the end: a flatMap from each item to its joined
+ results.  So the probe side is streamed through the compiled op array, never materialized, and
+ the output comes out in the probe side's order.  When neither side knows its size, the right
+ side is the build side, on the theory that it's usually the dimension table.  When the build
+ side is too big for its hash table to stay in the CPU cache, probe keys are checked against a
+ Bloom filter of the build keys first, so most probe items without a match cost one cache miss
+ instead of a walk through the table.
+
+ With a key comparator, both sides must already be sorted by key with it, and this is a merge
+ join: the smaller side is gathered into an array, and the other side is streamed past a cursor
+ into it that only moves forward.  No hashing, no hash table.
+ @param <L> the type of the items on the left.
+ @param <R> the type of the items on the right.
+ @param <K> the type of the key.
+ @param <O> the type of the joined output.
+ */
+class JoinDesc<L,R,K,O> extends TransDesc<O> {
+    // Smaller hash tables fit in the CPU cache, so a Bloom filter in front of them doesn't help.
+    private static final int BLOOM_MIN_BUILD = 1 << 16;
+
+    final TransDesc<R> right;
+    final Function1<? super L,K> leftKey;
+    final Function1<? super R,K> rightKey;
+    final Comparator<? super K> keyComp;
+    final Function2<? super L,? super R,? extends O> combiner;
+
+    JoinDesc(TransDesc<L> prev, TransDesc<R> r, Function1<? super L,K> lk,
+             Function1<? super R,K> rk, Comparator<? super K> kc,
+             Function2<? super L,? super R,? extends O> c) {
+        super(prev); right = r; leftKey = lk; rightKey = rk; keyComp = kc; combiner = c;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        RunList leftRl = prevOp.toRunList();
+        RunList rightRl = right.toRunList();
+        long leftSize = leftRl.sizeEstimate();
+        long rightSize = rightRl.sizeEstimate();
+        boolean buildLeft = (leftSize >= 0) && ( (rightSize < 0) || (leftSize < rightSize) );
+
+        if (buildLeft) {
+            Function2<Object,Object,Object> flipped =
+                    (r, l) -> ((Function2<Object,Object,Object>) combiner).apply(l, r);
+            return probe(rightRl, (Function1<Object,Object>) rightKey,
+                         gather(leftRl), (Function1<Object,Object>) leftKey, flipped);
+        }
+        return probe(leftRl, (Function1<Object,Object>) leftKey,
+                     gather(rightRl), (Function1<Object,Object>) rightKey,
+                     (Function2<Object,Object,Object>) combiner);
+    }
+
+    private static Object[] gather(RunList rl) {
+        Function2<List<Object>,Object,List<Object>> add = (accum, o) -> {
+            accum.add(o);
+            return accum;
+        };
+        return TransDesc.foldRunList(rl, new ArrayList<>(), add).toArray();
+    }
+
+    /** Adds the op that joins each probe item with the matching build items. */
+    @SuppressWarnings("unchecked")
+    private RunList probe(RunList probeRl, Function1<Object,Object> probeKey, Object[] build,
+                          Function1<Object,Object> buildKey,
+                          Function2<Object,Object,Object> probeFirst) {
+        if (keyComp == null) {
+            OpenHashMap<Object,Object> table = new OpenHashMap<>(build.length);
+            BloomFilter bloom = (build.length < BLOOM_MIN_BUILD) ? null :
+                                new BloomFilter(build.length);
+            for (Object b : build) {
+                Object k = buildKey.apply(b);
+                if (k != null) {
+                    table.aggregate(k, null, JoinDesc::addMatch, b);
+                    if (bloom != null) { bloom.add(k); }
+                }
+            }
+            probeRl.addToAll(new OpRun.FlatMapRun(p -> {
+                Object k = probeKey.apply(p);
+                if ( (k == null) || ((bloom != null) && !bloom.mightContain(k)) ) {
+                    return Collections.emptyList();
+                }
+                Object matches = table.get(k);
+                if (matches == null) { return Collections.emptyList(); }
+                if (matches instanceof Matches) {
+                    List<Object> ret = new ArrayList<>(((Matches) matches).size());
+                    for (Object b : (Matches) matches) { ret.add(probeFirst.apply(p, b)); }
+                    return ret;
+                }
+                return Collections.singletonList(
+                        probeFirst.apply(p, (matches == NULL_ITEM) ? null : matches));
+            }));
+        } else {
+            probeRl.addToAll(new OpRun.MergeJoinRun(probeKey, build, buildKey,
+                                                    (Comparator<Object>) keyComp, probeFirst));
+        }
+        return probeRl;
+    }
+
+    /** Marks a list of several matching build items (as opposed to one item that is a list). */
+    private static final class Matches extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
+
+        Matches(Object a, Object b) { super(4); add(a); add(b); }
+    }
+
+    // Stands in for a null build item, so that null can mean "no match yet" in the table.
+    private static final Object NULL_ITEM = new Object();
+
+    // The first match is stored as-is.  Only keys with several matches get a list.
+    private static Object addMatch(Object current, Object item) {
+        if (current == null) { return (item == null) ? NULL_ITEM : item; }
+        if (current instanceof Matches) {
+            ((Matches) current).add(item);
+            return current;
+        }
+        return new Matches((current == NULL_ITEM) ? null : current, item);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(JoinDesc.class);
+        right.fingerprint(parts);
+        parts.add(leftKey);
+        parts.add(rightKey);
+        parts.add(keyComp);
+        parts.add(combiner);
+    }
+}
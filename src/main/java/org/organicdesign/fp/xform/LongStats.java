@@ -0,0 +1,80 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ A mutable accumulator for the count, sum, min, max, mean, and variance of longs, for use with
+ TransDesc.collect() and collectParallel() (or TransDesc.longStats()), so that adding a number
+ doesn't allocate anything.  The variance is kept with Welford's method, and partial stats from
+ parallel ranges are merged with Chan's formula, so it stays accurate for big numbers.  Like
+ java.util.LongSummaryStatistics, the sum overflows silently, and an empty LongStats has a min of
+ Long.MAX_VALUE and a max of Long.MIN_VALUE.  Not thread-safe.
+ */
+public final class LongStats {
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private double mean = 0;
+    // Sum of squared differences from the mean.
+    private double m2 = 0;
+
+    public void accept(long l) {
+        count = count + 1;
+        sum = sum + l;
+        if (l < min) { min = l; }
+        if (l > max) { max = l; }
+        double delta = l - mean;
+        mean = mean + delta / count;
+        m2 = m2 + delta * (l - mean);
+    }
+
+    /** Adds the other stats into these ones and returns this. */
+    public LongStats combine(LongStats other) {
+        if (other.count == 0) { return this; }
+        if (count == 0) {
+            count = other.count; sum = other.sum; min = other.min; max = other.max;
+            mean = other.mean; m2 = other.m2;
+            return this;
+        }
+        long n = count + other.count;
+        double delta = other.mean - mean;
+        mean = mean + delta * other.count / n;
+        m2 = m2 + other.m2 + delta * delta * ((double) count * other.count / n);
+        count = n;
+        sum = sum + other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long count() { return count; }
+    public long sum() { return sum; }
+    public long min() { return min; }
+    public long max() { return max; }
+
+    /** The mean, or NaN if there are no numbers. */
+    public double mean() { return (count == 0) ? Double.NaN : mean; }
+
+    /** The population variance, or NaN if there are no numbers. */
+    public double variance() { return (count == 0) ? Double.NaN : m2 / count; }
+
+    /** The sample variance (divided by count - 1), or NaN if there are fewer than 2 numbers. */
+    public double sampleVariance() { return (count < 2) ? Double.NaN : m2 / (count - 1); }
+
+    @Override public String toString() {
+        return "LongStats(count:" + count + ",sum:" + sum + ",min:" + min + ",max:" + max +
+               ",mean:" + mean() + ",variance:" + variance() + ")";
+    }
+}
@@ -15,6 +15,8 @@ package org.organicdesign.fp.xform;
 
 import org.organicdesign.fp.function.Function1;
 
+import java.util.List;
+
 class MapDesc<T,U> extends TransDesc<U> {
     final Function1<? super T,? extends U> f;
 
@@ -26,4 +28,18 @@ class MapDesc<T,U> extends TransDesc<U> {
         ret.list.add(new OpRun.MapRun(f));
         return ret;
     }
+
+    /** A map produces one item for each input, so it can pass the limit along. */
+    @Override RunList toRunList(long limit) {
+        RunList ret = prevOp.toRunList(limit);
+        ret.list.add(new OpRun.MapRun(f));
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(MapDesc.class);
+        parts.add(f);
+    }
 }
@@ -0,0 +1,67 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ Describes an aggregate over a sliding window of the last size items, updated incrementally as
+ each item comes in, so that it costs O(1) per item no matter how big the window is.  There is
+ one output per input once the window is full, and nothing before that.  The op goes on every
+ source, so the window slides across concatenations too.
+ @param <T> the type of the items.
+ @param <U> the type of the aggregate.
+ */
+class MovingDesc<T,U> extends TransDesc<U> {
+    enum Kind { SUM, AVERAGE, MIN, MAX }
+
+    final Kind kind;
+    final int size;
+    // A ToLongFunction, ToDoubleFunction, or Comparator, depending on the kind.
+    final Object f;
+
+    MovingDesc(TransDesc<T> prev, Kind k, int sz, Object func) {
+        super(prev); kind = k; size = sz; f = func;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        OpRun op;
+        switch (kind) {
+            case SUM: op = new OpRun.MovingSumRun(size, (ToLongFunction<Object>) f); break;
+            case AVERAGE:
+                op = new OpRun.MovingAverageRun(size, (ToDoubleFunction<Object>) f);
+                break;
+            case MIN: op = new OpRun.MovingMinRun(size, (Comparator<Object>) f); break;
+            default: op = new OpRun.MovingMinRun(size,
+                                                 Collections.reverseOrder((Comparator<Object>) f));
+        }
+        ret.addToAll(op);
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(MovingDesc.class);
+        parts.add(kind);
+        parts.add(size);
+        parts.add(f);
+    }
+}
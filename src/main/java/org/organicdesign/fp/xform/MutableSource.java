@@ -15,9 +15,12 @@ package org.organicdesign.fp.xform;
 
 import org.organicdesign.fp.collections.UnmodSortedIterator;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Supplier;
 
 /**
  Like Iterator, this interface is inherently not thread-safe, so wrap it in something
@@ -49,14 +52,35 @@ interface MutableSource<T> extends UnmodSortedIterator<T> {
      */
     TransDesc.OpStrategy take(long t);
 
+    /**
+     How many items this source will produce, if it knows.  It's an estimate because ops that
+     come after the source can remove items.
+     @return the number of items left, or -1 if unknown.
+     */
+    long sizeEstimate();
+
+    /**
+     The best source for the given items: index access for random-access lists (so drops and takes
+     are index arithmetic and parallel folds can split it) and an iterator for everything else
+     (including lists like LinkedList, where get(i) has to walk the list).
+     */
+    @SuppressWarnings("unchecked")
+    static <T> MutableSource<T> of(Iterable<? extends T> items) {
+        if ( (items instanceof List) && (items instanceof RandomAccess) ) {
+            return new MutableListSource<>((List<T>) items, 0);
+        }
+        return new MutableIterableSource<>((Iterable<T>) items);
+    }
+
     // TODO: Mutable sources should record all drops, appends, (and takes?) then in a separate step right before processing, combine them together as appropriate.
     class MutableIterableSource<T> extends OpRun implements MutableSource<T> {
         private static final long IGNORE_TAKE = -1;
+        final Iterable<T> iterable;
         final Iterator<T> items;
         long drop = 0;
         long numToTake = IGNORE_TAKE;
 
-        MutableIterableSource(Iterable<T> ls) { items = ls.iterator(); }
+        MutableIterableSource(Iterable<T> ls) { iterable = ls; items = ls.iterator(); }
 
         private void doDrop() {
             while ((drop > 0) && items.hasNext()) {
@@ -105,8 +129,127 @@ interface MutableSource<T> extends UnmodSortedIterator<T> {
             }
             return TransDesc.OpStrategy.HANDLE_INTERNALLY;
         }
+
+        /** {@inheritDoc} */
+        @Override public long sizeEstimate() {
+            if ( !(iterable instanceof Collection) ) { return -1; }
+            // Only accurate before iteration starts, but that is when we plan.
+            long ret = Math.max(0, ((Collection) iterable).size() - drop);
+            return (numToTake == IGNORE_TAKE) ? ret : Math.min(ret, numToTake);
+        }
     } // end class MutableIterableSource
 
+    /**
+     Calls a supplier for each item, forever, unless a take puts a limit on it.  A drop still has
+     to call the supplier for each item it drops, since the supplier may have state.
+     */
+    class MutableGeneratorSource<T> extends OpRun implements MutableSource<T> {
+        private static final long IGNORE_TAKE = -1;
+        final Supplier<? extends T> supplier;
+        long drop = 0;
+        long numToTake = IGNORE_TAKE;
+
+        MutableGeneratorSource(Supplier<? extends T> s) { supplier = s; }
+
+        /** {@inheritDoc} */
+        @Override public boolean hasNext() {
+            while (drop > 0) {
+                drop = drop - 1;
+                supplier.get();
+            }
+            return numToTake != 0;
+        }
+
+        /** {@inheritDoc} */
+        @Override public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Called next() without calling hasNext." +
+                                                 " Completed specified take - no more" +
+                                                 " elements left.");
+            }
+            if (numToTake > IGNORE_TAKE) { numToTake = numToTake - 1; }
+            return supplier.get();
+        }
+
+        /** {@inheritDoc} */
+        @Override public TransDesc.OpStrategy drop(long d) {
+            if (d < 0) {
+                throw new IllegalArgumentException("Makes no sense to drop less than 0 items");
+            }
+            // Items dropped after a take come out of the take.
+            if (numToTake > IGNORE_TAKE) {
+                d = Math.min(d, numToTake);
+                numToTake = numToTake - d;
+            }
+            drop = drop + d;
+            return TransDesc.OpStrategy.HANDLE_INTERNALLY;
+        }
+
+        /** {@inheritDoc} */
+        @Override public TransDesc.OpStrategy take(long take) {
+            if (take < 0) {
+                throw new IllegalArgumentException("Can't take less than zero items.");
+            }
+            if ( (numToTake == IGNORE_TAKE) || (take < numToTake) ) {
+                numToTake = take;
+            }
+            return TransDesc.OpStrategy.HANDLE_INTERNALLY;
+        }
+
+        /** {@inheritDoc} */
+        @Override public long sizeEstimate() { return numToTake; }
+    } // end class MutableGeneratorSource
+
+    /**
+     The numbers from start, adding step each time, for count numbers.  Drops and takes are just
+     arithmetic.  This is for ranges too long to index with an int.  Shorter ones are a
+     MutableListSource over a lazy list, so that they can be split for parallel folds.
+     */
+    class MutableRangeSource extends OpRun implements MutableSource<Long> {
+        private long next;
+        private final long step;
+        private long count;
+
+        MutableRangeSource(long start, long stp, long cnt) {
+            next = start; step = stp; count = cnt;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean hasNext() { return count > 0; }
+
+        /** {@inheritDoc} */
+        @Override public Long next() {
+            if (count < 1) { throw new NoSuchElementException("No more elements"); }
+            long ret = next;
+            next = next + step;
+            count = count - 1;
+            return ret;
+        }
+
+        /** {@inheritDoc} */
+        @Override public TransDesc.OpStrategy drop(long d) {
+            if (d < 0) {
+                throw new IllegalArgumentException("Makes no sense to drop less than 0 items");
+            }
+            d = Math.min(d, count);
+            next = next + d * step;
+            count = count - d;
+            return TransDesc.OpStrategy.HANDLE_INTERNALLY;
+        }
+
+        /** {@inheritDoc} */
+        @Override public TransDesc.OpStrategy take(long t) {
+            if (t < 0) {
+                throw new IllegalArgumentException("Makes no sense to take less than 0 items");
+            }
+            count = Math.min(count, t);
+            return TransDesc.OpStrategy.HANDLE_INTERNALLY;
+        }
+
+        /** {@inheritDoc} */
+        @Override public long sizeEstimate() { return count; }
+    } // end class MutableRangeSource
+
     class MutableListSource<T> extends OpRun implements MutableSource<T> {
         final List<T> items;
         int idx;
@@ -170,6 +313,22 @@ interface MutableSource<T> extends UnmodSortedIterator<T> {
             return TransDesc.OpStrategy.HANDLE_INTERNALLY;
         }
 
+        /** {@inheritDoc} */
+        @Override public long sizeEstimate() { return size - idx; }
+
+        /** The item at the given index, without moving the current index. */
+        T get(int i) { return items.get(i); }
+
+        /**
+         A new source over items from (inclusive) to (exclusive) of the same underlying list, so
+         that separate threads can each process a range without sharing an index.
+         */
+        MutableListSource<T> subRange(int from, int to) {
+            MutableListSource<T> ret = new MutableListSource<>(items, from);
+            ret.size = to;
+            return ret;
+        }
+
 //            @Override public OpStrategy concatList(MutableListSource nextSrc) {
 //                size = size + nextSrc.size;
 //                return OpStrategy.HANDLE_INTERNALLY;
@@ -197,5 +356,15 @@ interface MutableSource<T> extends UnmodSortedIterator<T> {
             idx = idx + 1;
             return ret;
         }
+
+        /** {@inheritDoc} */
+        @Override T get(int i) { return itemArray[i]; }
+
+        /** {@inheritDoc} */
+        @Override MutableListSource<T> subRange(int from, int to) {
+            MutableArraySource<T> ret = new MutableArraySource<>(itemArray, from);
+            ret.size = to;
+            return ret;
+        }
     } // end class MutableArraySource
 } // end interface MutableSource
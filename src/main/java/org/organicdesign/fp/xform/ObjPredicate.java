@@ -0,0 +1,24 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ A filter that returns a primitive boolean, so the op loop calls it without unboxing a Boolean.
+ This is what every filter is compiled to: a Function1 returning Boolean is wrapped in one.
+ @param <T> the type of the items.
+ */
+@FunctionalInterface
+public interface ObjPredicate<T> {
+    boolean test(T t);
+}
@@ -1,6 +1,17 @@
 package org.organicdesign.fp.xform;
 
 import org.organicdesign.fp.function.Function1;
+import org.organicdesign.fp.function.Function2;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 
 /**
  OpRuns are mutable operations that the transform carries out when it is run.  This is in
@@ -10,15 +21,31 @@ import org.organicdesign.fp.function.Function1;
 abstract class OpRun {
     // Time using a linked list of ops instead of array, so that we can easily remove ops from
     // the list when they are used up.
-    Function1<Object,Boolean> filter = null;
+    // Every filter is an ObjPredicate, so the op loop never unboxes a Boolean.
+    ObjPredicate<Object> filter = null;
     Function1 map = null;
-    Function1<Object,MutableSourceProvider> flatMap = null;
+    // Any Iterable will do: FlatMapDesc passes the user's function straight through.
+    Function1<Object,Iterable> flatMap = null;
 //        Function1<Object,Boolean> keepGoing = null;
 
     public TransDesc.OpStrategy drop(long num) { return TransDesc.OpStrategy.CANNOT_HANDLE; }
 
     public TransDesc.OpStrategy take(long num) { return TransDesc.OpStrategy.CANNOT_HANDLE; }
 
+    /**
+     Whether this op can be run on separate ranges of the source at the same time (by different
+     threads).  Only true for ops that don't depend on the order or number of items, and have no
+     state of their own, or state that copyForRun() gives each range a new copy of.
+     */
+    boolean splittable() { return false; }
+
+    /**
+     This op for one run of a CompiledPlan or one range of a parallel fold: itself if it has no
+     state of its own, a new copy as it was compiled if it does, or null if it can't be copied
+     (then each run compiles its own).
+     */
+    OpRun copyForRun() { return splittable() ? this : null; }
+
 //        public OpStrategy concatList(MutableSource nextSrc) { return OpStrategy.CANNOT_HANDLE; }
 
     /**
@@ -34,25 +61,217 @@ abstract class OpRun {
             filter = o -> {
                 if (leftToDrop > 0) {
                     leftToDrop = leftToDrop - 1;
-                    return Boolean.FALSE;
+                    return false;
                 }
-                return Boolean.TRUE;
+                return true;
             };
         }
         @Override public TransDesc.OpStrategy drop(long num) {
             leftToDrop = leftToDrop + num;
             return TransDesc.OpStrategy.HANDLE_INTERNALLY;
         }
+        @Override OpRun copyForRun() { return new DropRun(leftToDrop); }
     }
 
+    /**
+     Lets through only the first item with each key.  This is a filter, so it can't handle a drop
+     or take: the source doesn't know which items will be duplicates, so a drop after a distinct
+     can't be pushed down past it.
+     */
+    static class DistinctRun extends OpRun {
+        private final Function1<Object,?> keyFn;
+        private final long expectedSize;
+        private final OpenHashSet seen;
+        DistinctRun(Function1<Object,?> kf, long expSize) {
+            keyFn = kf;
+            expectedSize = expSize;
+            seen = new OpenHashSet(expSize);
+            if (kf == null) {
+                filter = o -> seen.add(o);
+            } else {
+                filter = o -> seen.add(kf.apply(o));
+            }
+        }
+        @Override OpRun copyForRun() { return new DistinctRun(keyFn, expectedSize); }
+    }
+
+    /** Drops items whose keys are definitely not in the Bloom filter. */
+    static class SemiJoinRun extends OpRun {
+        SemiJoinRun(BloomFilter bloom, Function1<Object,?> keyFn) {
+            filter = o -> bloom.mightContain(keyFn.apply(o));
+        }
+        @Override boolean splittable() { return true; }
+    }
+
+    /**
+     A filter with no side effects.  The cost (time per call, in any unit) and selectivity (the
+     fraction of items that get through) are negative when unknown.  Only an independent filter
+     (declared safe to call on any item, not just the ones the filters before it let through) may
+     be measured or moved by the planner.  Any other filter stays where it was written, and the
+     independent filters after it never move ahead of it.
+     */
     static class FilterRun extends OpRun {
-        FilterRun(Function1<Object,Boolean> func) { filter = func; }
+        double cost;
+        double selectivity;
+        final boolean independent;
+        FilterRun(ObjPredicate<Object> func, double c, double s, boolean indep) {
+            filter = func; cost = c; selectivity = s; independent = indep;
+        }
+        FilterRun(ObjPredicate<Object> func) { this(func, -1, -1, false); }
+        @Override boolean splittable() { return true; }
+    }
+
+    /**
+     Runs several independent filters as one, reordering them as it goes.  For the first
+     window of items, and again for a window at the start of every period after that, every filter
+     is called on every item and timed, so that each filter's cost and pass rate are measured on
+     the same items, independent of the order.  At the end of each window, the filters are put in
+     order of rank (see FilterPlanner).  Between windows, the filters run in that order, stopping
+     at the first one that fails.  Its state isn't thread-safe, so it isn't splittable.
+     */
+    static class AdaptiveFilterRun extends OpRun {
+        private final ObjPredicate<Object>[] filters;
+        private final long[] nanos;
+        private final int[] passes;
+        private final int window;
+        private final long period;
+        // Where we are in the current period.
+        private long phase = 0;
+
+        @SuppressWarnings("unchecked")
+        AdaptiveFilterRun(List<FilterRun> runs, int win, long per) {
+            filters = new ObjPredicate[runs.size()];
+            for (int i = 0; i < filters.length; i++) { filters[i] = runs.get(i).filter; }
+            nanos = new long[filters.length];
+            passes = new int[filters.length];
+            window = win;
+            period = per;
+            filter = o -> {
+                boolean ret;
+                if (phase < window) {
+                    ret = measure(o);
+                    if (phase == window - 1) { reorder(); }
+                } else {
+                    ret = true;
+                    for (ObjPredicate<Object> f : filters) {
+                        if (!f.test(o)) {
+                            ret = false;
+                            break;
+                        }
+                    }
+                }
+                phase = phase + 1;
+                if (phase == period) { phase = 0; }
+                return ret;
+            };
+        }
+
+        private boolean measure(Object o) {
+            boolean ret = true;
+            for (int i = 0; i < filters.length; i++) {
+                long start = System.nanoTime();
+                boolean passed = filters[i].test(o);
+                nanos[i] = nanos[i] + (System.nanoTime() - start);
+                if (passed) {
+                    passes[i] = passes[i] + 1;
+                } else {
+                    ret = false;
+                }
+            }
+            return ret;
+        }
+
+        /** Sorts the filters by rank (a stable insertion sort: there are only a few) and resets. */
+        private void reorder() {
+            double[] ranks = new double[filters.length];
+            for (int i = 0; i < filters.length; i++) {
+                ranks[i] = nanos[i] / Math.max(1e-9, 1 - (double) passes[i] / window);
+            }
+            for (int i = 1; i < filters.length; i++) {
+                ObjPredicate<Object> f = filters[i];
+                double rank = ranks[i];
+                int j = i;
+                while ( (j > 0) && (ranks[j - 1] > rank) ) {
+                    filters[j] = filters[j - 1];
+                    ranks[j] = ranks[j - 1];
+                    j = j - 1;
+                }
+                filters[j] = f;
+                ranks[j] = rank;
+            }
+            Arrays.fill(nanos, 0);
+            Arrays.fill(passes, 0);
+        }
+    }
+
+    /** Coded as a filter that lets everything through, but never moved by the planner. */
+    static class ForEachRun extends OpRun {
+        ForEachRun(Function1<Object,?> func) {
+            filter = o -> {
+                func.apply(o);
+                return true;
+            };
+        }
+        @Override boolean splittable() { return true; }
+    }
+
+    /**
+     Coded as a filter that lets everything through, checking the token every CHECK_EVERY items.
+     Each range of a parallel fold gets its own copy, so the count is never shared by threads.
+     */
+    static class CancelRun extends OpRun {
+        // A power of 2, so the check is a mask.
+        static final int CHECK_EVERY = 1024;
+        final CancelToken token;
+        private int count = 0;
+        CancelRun(CancelToken tok) {
+            token = tok;
+            filter = o -> {
+                if ( ((count & (CHECK_EVERY - 1)) == 0) && token.isCancelled() ) {
+                    throw new FoldCancelledException("Fold cancelled after about " + count +
+                                                     " items");
+                }
+                count = count + 1;
+                return true;
+            };
+        }
+        @Override public TransDesc.OpStrategy drop(long num) { return TransDesc.OpStrategy.ASK_SUPPLIER; }
+        @Override public TransDesc.OpStrategy take(long num) { return TransDesc.OpStrategy.ASK_SUPPLIER; }
+        @Override boolean splittable() { return true; }
+        @Override OpRun copyForRun() { return new CancelRun(token); }
     }
 
     static class MapRun extends OpRun {
         MapRun(Function1 func) { map = func; }
         @Override public TransDesc.OpStrategy drop(long num) { return TransDesc.OpStrategy.ASK_SUPPLIER; }
         @Override public TransDesc.OpStrategy take(long num) { return TransDesc.OpStrategy.ASK_SUPPLIER; }
+        @Override boolean splittable() { return true; }
+    }
+
+    /** Emits the accumulator after combining it with each item. */
+    static class ScanRun extends OpRun {
+        private final Object ident;
+        private final Function2<Object,Object,Object> func;
+        private Object accum;
+        ScanRun(Object id, Function2<Object,Object,Object> f) {
+            ident = id;
+            func = f;
+            accum = id;
+            map = a -> {
+                accum = f.apply(accum, a);
+                return accum;
+            };
+        }
+        @Override OpRun copyForRun() { return new ScanRun(ident, func); }
+    }
+
+    /** Coded as a map that returns the TERMINATE sentinel value at the first item that fails. */
+    static class TakeWhileRun extends OpRun {
+        TakeWhileRun(Function1<Object,Boolean> func) {
+            map = a -> func.apply(a) ? a : TransDesc.TERMINATE;
+        }
+        // No state: it just can't be split, because it depends on the order of the items.
+        @Override OpRun copyForRun() { return this; }
     }
 
     // TODO: FlatMap should drop and take internally using addition/subtraction on each output
@@ -61,7 +280,52 @@ abstract class OpRun {
 //            ListSourceDesc<U> cache = null;
 //            int numToDrop = 0;
 
-        FlatMapRun(Function1<Object,MutableSourceProvider> func) { flatMap = func; }
+        FlatMapRun(Function1<Object,Iterable> func) { flatMap = func; }
+        @Override boolean splittable() { return true; }
+    }
+
+    /**
+     The streaming side of a merge join.  Both sides are sorted by key, so the cursor into the
+     (gathered) build side only ever moves forward.  It stops at the first build item with the
+     current key, not after it, because the next streamed item may have the same key.  The
+     cursor is state, so this can't be split.
+     */
+    static class MergeJoinRun extends OpRun {
+        private final Object[] items;
+        private final Object[] keys;
+        private int cursor = 0;
+
+        MergeJoinRun(Function1<Object,Object> streamKey, Object[] build,
+                     Function1<Object,Object> buildKey, Comparator<Object> keyComp,
+                     Function2<Object,Object,Object> streamFirst) {
+            // Gather the keys once.  Null keys never match, so leave those items out.
+            List<Object> is = new ArrayList<>(build.length);
+            List<Object> ks = new ArrayList<>(build.length);
+            for (Object b : build) {
+                Object k = buildKey.apply(b);
+                if (k != null) {
+                    is.add(b);
+                    ks.add(k);
+                }
+            }
+            items = is.toArray();
+            keys = ks.toArray();
+
+            flatMap = o -> {
+                Object k = streamKey.apply(o);
+                if (k == null) { return Collections.emptyList(); }
+                while ( (cursor < keys.length) && (keyComp.compare(keys[cursor], k) < 0) ) {
+                    cursor = cursor + 1;
+                }
+                List<Object> ret = null;
+                for (int i = cursor;
+                     (i < keys.length) && (keyComp.compare(keys[i], k) == 0); i++) {
+                    if (ret == null) { ret = new ArrayList<>(); }
+                    ret.add(streamFirst.apply(o, items[i]));
+                }
+                return (ret == null) ? Collections.emptyList() : ret;
+            };
+        }
     }
 
     /**
@@ -92,5 +356,148 @@ abstract class OpRun {
             }
             return TransDesc.OpStrategy.HANDLE_INTERNALLY;
         }
+        @Override OpRun copyForRun() { return new TakeRun(numToTake); }
+    }
+
+    /**
+     Sliding (or, with step == size, tumbling) windows.  Each item goes into a ring buffer.  Once
+     the ring is full, every step-th item lets a window through (that's the filter) and the
+     window is a read-only view of the ring (that's the map).  It's the same view object every
+     time, so it's only valid until the next item arrives: copy it if you need to keep it.
+     A trailing window with less than size items is never emitted.
+     */
+    static class WindowRun extends OpRun {
+        private final Object[] ring;
+        private final int step;
+        // Where the oldest item is (and the next one will go once the ring is full).
+        private int start = 0;
+        private long count = 0;
+        private final RingView view = new RingView();
+
+        WindowRun(int size, int stp) {
+            ring = new Object[size];
+            step = stp;
+            filter = o -> {
+                ring[start] = o;
+                start = (start + 1 == ring.length) ? 0 : start + 1;
+                count = count + 1;
+                return (count >= ring.length) && ((count - ring.length) % step == 0);
+            };
+            map = o -> view;
+        }
+
+        private class RingView extends AbstractList<Object> implements RandomAccess {
+            @Override public Object get(int i) {
+                if ( (i < 0) || (i >= ring.length) ) {
+                    throw new IndexOutOfBoundsException("Index: " + i + " size: " + ring.length);
+                }
+                int j = start + i;
+                return ring[(j >= ring.length) ? j - ring.length : j];
+            }
+            @Override public int size() { return ring.length; }
+        }
+    }
+
+    /**
+     Sum of the last size numbers, updated in constant time per item by adding the new number and
+     subtracting the one that falls out of the window.  Emits nothing until the window is full.
+     */
+    static class MovingSumRun extends OpRun {
+        private final long[] ring;
+        private int idx = 0;
+        private long count = 0;
+        private long sum = 0;
+
+        MovingSumRun(int size, ToLongFunction<Object> f) {
+            ring = new long[size];
+            filter = o -> {
+                long l = f.applyAsLong(o);
+                sum = sum + l - ring[idx];
+                ring[idx] = l;
+                idx = (idx + 1 == ring.length) ? 0 : idx + 1;
+                count = count + 1;
+                return (count >= ring.length);
+            };
+            map = o -> sum;
+        }
+    }
+
+    /**
+     Average of the last size numbers, updated in constant time per item like MovingSumRun.
+     Adding and subtracting doubles accumulates rounding error, so the sum is recomputed from the
+     ring each time it wraps around, which is still constant time per item on average.
+     */
+    static class MovingAverageRun extends OpRun {
+        private final double[] ring;
+        private int idx = 0;
+        private long count = 0;
+        private double sum = 0;
+
+        MovingAverageRun(int size, ToDoubleFunction<Object> f) {
+            ring = new double[size];
+            filter = o -> {
+                double d = f.applyAsDouble(o);
+                sum = sum + d - ring[idx];
+                ring[idx] = d;
+                idx = idx + 1;
+                if (idx == ring.length) {
+                    idx = 0;
+                    double exact = 0;
+                    for (double x : ring) { exact = exact + x; }
+                    sum = exact;
+                }
+                count = count + 1;
+                return (count >= ring.length);
+            };
+            map = o -> sum / ring.length;
+        }
+    }
+
+    /**
+     Smallest of the last size items (or biggest, with a reversed comparator), using a monotonic
+     deque: the deque only holds items that could still be the minimum of some window, in
+     increasing order, so the front is the answer.  Each item is added and removed at most once,
+     which makes this constant time per item on average.
+     */
+    static class MovingMinRun extends OpRun {
+        private final int size;
+        // The deque is a ring of (item, index) pairs.  It never holds more than size items.
+        private final Object[] items;
+        private final long[] idxs;
+        private int head = 0;
+        private int len = 0;
+        private long count = 0;
+
+        @SuppressWarnings("unchecked")
+        MovingMinRun(int sz, Comparator<Object> comp) {
+            size = sz;
+            items = new Object[sz];
+            idxs = new long[sz];
+            filter = o -> {
+                // Anything bigger than the new item can never be the minimum again.
+                while ( (len > 0) && (comp.compare(items[slot(len - 1)], o) > 0) ) {
+                    items[slot(len - 1)] = null;
+                    len = len - 1;
+                }
+                // The oldest item falls out of the window.
+                if ( (len > 0) && (idxs[head] <= count - size) ) {
+                    items[head] = null;
+                    head = slot(1);
+                    len = len - 1;
+                }
+                int tail = slot(len);
+                items[tail] = o;
+                idxs[tail] = count;
+                len = len + 1;
+                count = count + 1;
+                return (count >= size);
+            };
+            map = o -> items[head];
+        }
+
+        private int slot(int i) {
+            int j = head + i;
+            return (j >= size) ? j - size : j;
+        }
     }
 }
@@ -0,0 +1,162 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ A hash map using open addressing (linear probing) in parallel key and value arrays, made for
+ aggregating in place: aggregate() finds the key's slot once and replaces the value there, so
+ there's no per-key list and no Map.Entry per key.  The Map interface is read-only (put() throws
+ UnsupportedOperationException as in AbstractMap) because callers get this back as the result.
+ Not thread-safe while it's being built.
+ @param <K> the type of the keys
+ @param <V> the type of the aggregated values
+ */
+final class OpenHashMap<K,V> extends AbstractMap<K,V> {
+    // Stands in for a null key, so that null can mean "empty slot" in the keys array.
+    private static final Object NULL_KEY = new Object();
+
+    private Object[] keys;
+    private Object[] vals;
+    private int size = 0;
+
+    /** @param expectedSize the most keys expected, or -1 if unknown. */
+    OpenHashMap(long expectedSize) {
+        int cap = OpenHashSet.capacityFor(expectedSize);
+        keys = new Object[cap];
+        vals = new Object[cap];
+    }
+
+    private static int hash(Object k) { return OpenHashSet.mix(k.hashCode()); }
+
+    /** Returns the slot of the key, or the empty slot where it would go. */
+    private int slot(Object k) {
+        int mask = keys.length - 1;
+        int i = hash(k) & mask;
+        Object x;
+        while ((x = keys[i]) != null) {
+            if ((x == k) || x.equals(k)) { return i; }
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     Combines the item into the value for the key, starting with ident if this is the first item
+     for that key.
+     */
+    @SuppressWarnings("unchecked")
+    <A> OpenHashMap<K,V> aggregate(K key, V ident, Function2<V,? super A,V> reducer, A item) {
+        Object k = (key == null) ? NULL_KEY : key;
+        int i = slot(k);
+        if (keys[i] == null) {
+            keys[i] = k;
+            vals[i] = reducer.apply(ident, item);
+            size = size + 1;
+            if ((size << 1) > keys.length) { rehash(); }
+        } else {
+            vals[i] = reducer.apply((V) vals[i], item);
+        }
+        return this;
+    }
+
+    /**
+     Adds all the keys and values of the other map to this one, using the combiner for keys that
+     are in both.  Used to put together the pre-aggregated maps from parallel partitions.
+     */
+    @SuppressWarnings("unchecked")
+    OpenHashMap<K,V> merge(OpenHashMap<K,V> other, Function2<V,V,V> combiner) {
+        for (int j = 0; j < other.keys.length; j++) {
+            Object k = other.keys[j];
+            if (k == null) { continue; }
+            int i = slot(k);
+            if (keys[i] == null) {
+                keys[i] = k;
+                vals[i] = other.vals[j];
+                size = size + 1;
+                if ((size << 1) > keys.length) { rehash(); }
+            } else {
+                vals[i] = combiner.apply((V) vals[i], (V) other.vals[j]);
+            }
+        }
+        return this;
+    }
+
+    private void rehash() {
+        Object[] oldKeys = keys;
+        Object[] oldVals = vals;
+        keys = new Object[oldKeys.length << 1];
+        vals = new Object[oldKeys.length << 1];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) { continue; }
+            int i = slot(oldKeys[j]);
+            keys[i] = oldKeys[j];
+            vals[i] = oldVals[j];
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public int size() { return size; }
+
+    /** {@inheritDoc} */
+    @Override public boolean containsKey(Object key) {
+        return keys[slot((key == null) ? NULL_KEY : key)] != null;
+    }
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override public V get(Object key) {
+        int i = slot((key == null) ? NULL_KEY : key);
+        return (keys[i] == null) ? null : (V) vals[i];
+    }
+
+    /** {@inheritDoc} */
+    @Override public Set<Map.Entry<K,V>> entrySet() {
+        return new AbstractSet<Map.Entry<K,V>>() {
+            @Override public int size() { return size; }
+
+            @Override public Iterator<Map.Entry<K,V>> iterator() {
+                return new Iterator<Map.Entry<K,V>>() {
+                    private int i = nextSlot(0);
+
+                    private int nextSlot(int from) {
+                        while ( (from < keys.length) && (keys[from] == null) ) { from = from + 1; }
+                        return from;
+                    }
+
+                    @Override public boolean hasNext() { return i < keys.length; }
+
+                    @SuppressWarnings("unchecked")
+                    @Override public Map.Entry<K,V> next() {
+                        if (i >= keys.length) { throw new NoSuchElementException(); }
+                        Object k = keys[i];
+                        Map.Entry<K,V> ret =
+                                new SimpleImmutableEntry<>((k == NULL_KEY) ? null : (K) k,
+                                                           (V) vals[i]);
+                        i = nextSlot(i + 1);
+                        return ret;
+                    }
+                };
+            }
+        };
+    }
+}
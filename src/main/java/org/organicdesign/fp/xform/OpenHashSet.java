@@ -0,0 +1,175 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+/**
+ An add-only hash set using open addressing (linear probing) so that adding an item never
+ allocates a node the way java.util.HashSet does.  Longs and Integers get their own tables of
+ primitives, so the only thing stored for them is the number itself.  Everything else goes into
+ an Object table.  A Long and an Integer with the same value are different, just like in HashSet.
+ Tables are allocated on first use, so a stream of Longs never allocates the Object table.
+ Not thread-safe.
+ */
+final class OpenHashSet {
+    // Allocating the whole estimated size up front is a waste when most items are duplicates.
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
+
+    private final int initialCapacity;
+
+    private long[] longs = null;
+    private int numLongs = 0;
+    private boolean hasZeroLong = false;
+
+    private int[] ints = null;
+    private int numInts = 0;
+    private boolean hasZeroInt = false;
+
+    private Object[] objs = null;
+    private int numObjs = 0;
+    private boolean hasNull = false;
+
+    /**
+     @param expectedSize the most distinct items expected, or -1 if unknown.
+     */
+    OpenHashSet(long expectedSize) { initialCapacity = capacityFor(expectedSize); }
+
+    /** The power-of-2 table size that holds the given number of items at 50% load or less. */
+    static int capacityFor(long expectedSize) {
+        if (expectedSize < 8) { return 16; }
+        if (expectedSize >= (MAX_INITIAL_CAPACITY >> 1)) { return MAX_INITIAL_CAPACITY; }
+        return Integer.highestOneBit((int) expectedSize - 1) << 2;
+    }
+
+    static int mix(long l) {
+        // Finalizer from MurmurHash3.
+        l = (l ^ (l >>> 33)) * 0xff51afd7ed558ccdL;
+        l = (l ^ (l >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (l ^ (l >>> 33));
+    }
+
+    static int mix(int i) {
+        i = (i ^ (i >>> 16)) * 0x85ebca6b;
+        i = (i ^ (i >>> 13)) * 0xc2b2ae35;
+        return i ^ (i >>> 16);
+    }
+
+    /** @return true if the item was not in the set before. */
+    boolean add(Object o) {
+        if (o instanceof Long) { return addLong((Long) o); }
+        if (o instanceof Integer) { return addInt((Integer) o); }
+        if (o == null) {
+            if (hasNull) { return false; }
+            hasNull = true;
+            return true;
+        }
+        return addObj(o);
+    }
+
+    /** @return true if the item was not in the set before. */
+    boolean addLong(long l) {
+        if (l == 0) {
+            if (hasZeroLong) { return false; }
+            hasZeroLong = true;
+            return true;
+        }
+        if (longs == null) { longs = new long[initialCapacity]; }
+        int mask = longs.length - 1;
+        int i = mix(l) & mask;
+        while (longs[i] != 0) {
+            if (longs[i] == l) { return false; }
+            i = (i + 1) & mask;
+        }
+        longs[i] = l;
+        numLongs = numLongs + 1;
+        if ((numLongs << 1) > longs.length) { longs = rehash(longs); }
+        return true;
+    }
+
+    /** @return true if the item was not in the set before. */
+    boolean addInt(int n) {
+        if (n == 0) {
+            if (hasZeroInt) { return false; }
+            hasZeroInt = true;
+            return true;
+        }
+        if (ints == null) { ints = new int[initialCapacity]; }
+        int mask = ints.length - 1;
+        int i = mix(n) & mask;
+        while (ints[i] != 0) {
+            if (ints[i] == n) { return false; }
+            i = (i + 1) & mask;
+        }
+        ints[i] = n;
+        numInts = numInts + 1;
+        if ((numInts << 1) > ints.length) { ints = rehash(ints); }
+        return true;
+    }
+
+    private boolean addObj(Object o) {
+        if (objs == null) { objs = new Object[initialCapacity]; }
+        int mask = objs.length - 1;
+        int i = mix(o.hashCode()) & mask;
+        Object x;
+        while ((x = objs[i]) != null) {
+            if ((x == o) || x.equals(o)) { return false; }
+            i = (i + 1) & mask;
+        }
+        objs[i] = o;
+        numObjs = numObjs + 1;
+        if ((numObjs << 1) > objs.length) { objs = rehash(objs); }
+        return true;
+    }
+
+    /** The number of distinct items added. */
+    long size() {
+        return numLongs + numInts + numObjs +
+               (hasZeroLong ? 1 : 0) + (hasZeroInt ? 1 : 0) + (hasNull ? 1 : 0);
+    }
+
+    private static long[] rehash(long[] old) {
+        long[] ret = new long[old.length << 1];
+        int mask = ret.length - 1;
+        for (long l : old) {
+            if (l == 0) { continue; }
+            int i = mix(l) & mask;
+            while (ret[i] != 0) { i = (i + 1) & mask; }
+            ret[i] = l;
+        }
+        return ret;
+    }
+
+    private static int[] rehash(int[] old) {
+        int[] ret = new int[old.length << 1];
+        int mask = ret.length - 1;
+        for (int n : old) {
+            if (n == 0) { continue; }
+            int i = mix(n) & mask;
+            while (ret[i] != 0) { i = (i + 1) & mask; }
+            ret[i] = n;
+        }
+        return ret;
+    }
+
+    private static Object[] rehash(Object[] old) {
+        Object[] ret = new Object[old.length << 1];
+        int mask = ret.length - 1;
+        for (Object o : old) {
+            if (o == null) { continue; }
+            int i = mix(o.hashCode()) & mask;
+            while (ret[i] != null) { i = (i + 1) & mask; }
+            ret[i] = o;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ Folds a transformation in parallel by splitting an indexed source (MutableListSource or
+ MutableArraySource) into ranges on the ForkJoinPool.commonPool().  Each range gets its own
+ source and its own accumulator from the supplier, but they all share the compiled ops (except
+ for a copy of each of the few with state, see OpRun.copyForRun()), so this is only done when
+ every op is splittable().  The partial results are combined in source
+ order, so a combiner that is associative (but not commutative) still gives the right answer.
+ Anything that can't be split is folded serially into a single accumulator from the supplier.
+ */
+final class ParallelFold {
+    // Smaller ranges cost more in task overhead than they save.
+    static final int MIN_RANGE = 1024;
+    // More ranges than threads, so that a slow range doesn't leave the others idle.
+    private static final int RANGES_PER_THREAD = 4;
+
+    private ParallelFold() { throw new UnsupportedOperationException("No instantiation"); }
+
+    /**
+     Returns the indexed source of the runlist if it can be folded in ranges, or null if it has
+     to be folded serially.
+     */
+    static MutableSource.MutableListSource splittableSource(RunList runList) {
+        if ( (runList.prev != null) || (runList.next != null) ||
+             !(runList.source instanceof MutableSource.MutableListSource) ) {
+            return null;
+        }
+        for (OpRun op : runList.list) {
+            if (!op.splittable()) { return null; }
+        }
+        return (MutableSource.MutableListSource) runList.source;
+    }
+
+    /** The size of the ranges to split the given number of items into. */
+    static int rangeSize(int numItems) {
+        int numRanges = ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD;
+        return Math.max(MIN_RANGE, numItems / numRanges);
+    }
+
+    static <A,B> B fold(TransDesc<A> td, Supplier<B> newAccum, Function2<B,? super A,B> reducer,
+                        Function2<B,B,B> combiner) {
+        return fold(td.toRunList(), newAccum, reducer, combiner);
+    }
+
+    /** Same as fold(), for a transformation that's already compiled. */
+    static <B> B fold(RunList runList, Supplier<B> newAccum, Function2<B,?,B> reducer,
+                      Function2<B,B,B> combiner) {
+        MutableSource.MutableListSource src = splittableSource(runList);
+        if (src == null) {
+            return TransDesc.foldRunList(runList, newAccum.get(), reducer);
+        }
+        int numItems = src.size - src.idx;
+        int rangeSize = rangeSize(numItems);
+        if (numItems <= rangeSize) {
+            return TransDesc.foldRunList(runList, newAccum.get(), reducer);
+        }
+        // Before the op array is shared, so that every range checks (see CancelDesc).
+        CancelDesc.checkInnerFold(runList);
+        return ForkJoinPool.commonPool()
+                           .invoke(new RangeTask<>(src, src.idx, src.size, rangeSize,
+                                                   runList.opArray(), newAccum, reducer,
+                                                   combiner));
+    }
+
+    /**
+     Calls body with each number from 0 (inclusive) to n (exclusive) on the
+     ForkJoinPool.commonPool(), for algorithms that need more than one pass over the ranges.
+     Returns when they are all done.
+     */
+    static void forEachRange(int n, IntConsumer body) {
+        ForkJoinPool.commonPool().invoke(new EachTask(0, n, body));
+    }
+
+    private static final class EachTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        EachTask(int f, int t, IntConsumer b) { from = f; to = t; body = b; }
+
+        @Override protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            int mid = from + ((to - from) >>> 1);
+            invokeAll(new EachTask(from, mid, body), new EachTask(mid, to, body));
+        }
+    }
+
+    private static final class RangeTask<B> extends RecursiveTask<B> {
+        private static final long serialVersionUID = 1L;
+
+        private final MutableSource.MutableListSource src;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+        private final OpRun[] ops;
+        private final Supplier<B> newAccum;
+        private final Function2 reducer;
+        private final Function2<B,B,B> combiner;
+
+        RangeTask(MutableSource.MutableListSource s, int f, int t, int r, OpRun[] o,
+                  Supplier<B> n, Function2 red, Function2<B,B,B> c) {
+            src = s; from = f; to = t; rangeSize = r; ops = o; newAccum = n; reducer = red;
+            combiner = c;
+        }
+
+        @Override protected B compute() {
+            if (to - from <= rangeSize) {
+                RunList runList = RunList.of(null, src.subRange(from, to));
+                for (OpRun op : ops) { runList.list.add(op.copyForRun()); }
+                return TransDesc.foldRunList(runList, newAccum.get(), reducer);
+            }
+            int mid = from + ((to - from) >>> 1);
+            RangeTask<B> left = new RangeTask<>(src, from, mid, rangeSize, ops, newAccum, reducer,
+                                                combiner);
+            left.fork();
+            B right = new RangeTask<>(src, mid, to, rangeSize, ops, newAccum, reducer, combiner)
+                    .compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.List;
+
+/**
+ Marks the place where everything before it gets run through the FilterPlanner, which may
+ measure filters without declared hints and reorder them.
+ @param <T> the type of the items.
+ */
+class PlanFiltersDesc<T> extends TransDesc<T> {
+    PlanFiltersDesc(TransDesc<T> prev) { super(prev); }
+
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        FilterPlanner.reorder(ret);
+        return ret;
+    }
+
+    /** Doesn't change the number of items, so it can pass the limit along. */
+    @Override RunList toRunList(long limit) {
+        RunList ret = prevOp.toRunList(limit);
+        FilterPlanner.reorder(ret);
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(PlanFiltersDesc.class);
+    }
+}
@@ -0,0 +1,124 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ Holds the materialized output of cached TransDesc prefixes (see TransDesc.cache()).  The budget
+ is measured in cached items (one reference each), not bytes, since we can't know how big the
+ items themselves are.  A prefix with no items counts as one, since its key still holds on to
+ the description and its source.  There is also a cap on the number of prefixes, so that many
+ small prefixes can't keep many big sources in memory.  When adding a prefix goes over either
+ one, the least recently used prefixes are evicted.  A prefix that is bigger than the whole
+ budget is used for the fold that computed it, then thrown away.  All methods are synchronized,
+ so one PrefixCache can be shared by many threads.  Two threads that miss on the same prefix at the same time will both compute it.
+ */
+public final class PrefixCache {
+    /** The most prefixes a PrefixCache holds unless another number is given. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /**
+     Used by TransDesc.cache() when no PrefixCache is specified.  Holds about a million items in
+     up to DEFAULT_MAX_ENTRIES prefixes.
+     */
+    public static final PrefixCache DEFAULT = new PrefixCache(1L << 20, DEFAULT_MAX_ENTRIES);
+
+    private final long maxItems;
+    private final int maxEntries;
+    // Access-ordered, so that the eldest entry is the least recently used.
+    private final LinkedHashMap<CacheDesc<?>,ChunkedList<?>> cache =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long usedItems = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private PrefixCache(long max, int entries) { maxItems = max; maxEntries = entries; }
+
+    /** Static factory method */
+    public static PrefixCache of(long maxItems, int maxEntries) {
+        if (maxItems < 0) {
+            throw new IllegalArgumentException("Makes no sense to have a budget of less than 0 items");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Makes no sense to hold less than 1 prefix");
+        }
+        return new PrefixCache(maxItems, maxEntries);
+    }
+
+    /** Static factory method, holding up to DEFAULT_MAX_ENTRIES prefixes. */
+    public static PrefixCache of(long maxItems) { return of(maxItems, DEFAULT_MAX_ENTRIES); }
+
+    // What an entry counts against the budget.
+    private static long weight(ChunkedList<?> items) { return Math.max(1, items.size()); }
+
+    synchronized ChunkedList<?> get(CacheDesc<?> key) {
+        ChunkedList<?> ret = cache.get(key);
+        if (ret == null) {
+            misses = misses + 1;
+        } else {
+            hits = hits + 1;
+        }
+        return ret;
+    }
+
+    synchronized void put(CacheDesc<?> key, ChunkedList<?> items) {
+        if (weight(items) > maxItems) { return; }
+        ChunkedList<?> old = cache.put(key, items);
+        if (old != null) { usedItems = usedItems - weight(old); }
+        usedItems = usedItems + weight(items);
+
+        Iterator<Map.Entry<CacheDesc<?>,ChunkedList<?>>> iter = cache.entrySet().iterator();
+        while ( ((usedItems > maxItems) || (cache.size() > maxEntries)) && iter.hasNext() ) {
+            Map.Entry<CacheDesc<?>,ChunkedList<?>> eldest = iter.next();
+            if (eldest.getKey() == key) { continue; }
+            usedItems = usedItems - weight(eldest.getValue());
+            evictions = evictions + 1;
+            iter.remove();
+        }
+    }
+
+    /** Throws away all cached prefixes.  The counters are not reset. */
+    public synchronized void clear() {
+        cache.clear();
+        usedItems = 0;
+    }
+
+    /** The most items this cache will hold. */
+    public long maxItems() { return maxItems; }
+
+    /** The most prefixes this cache will hold. */
+    public int maxEntries() { return maxEntries; }
+
+    /** The number of items currently cached, counting each empty prefix as one. */
+    public synchronized long usedItems() { return usedItems; }
+
+    /** The number of folds that found their prefix already materialized. */
+    public synchronized long hits() { return hits; }
+
+    /** The number of folds that had to compute their prefix. */
+    public synchronized long misses() { return misses; }
+
+    /** The number of prefixes thrown away to stay under budget. */
+    public synchronized long evictions() { return evictions; }
+
+    @Override public synchronized String toString() {
+        return "PrefixCache(usedItems:" + usedItems + ",maxItems:" + maxItems + ",entries:" +
+               cache.size() + ",maxEntries:" + maxEntries + ",hits:" + hits + ",misses:" + misses +
+               ",evictions:" + evictions + ")";
+    }
+}
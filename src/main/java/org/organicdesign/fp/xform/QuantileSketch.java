@@ -0,0 +1,159 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Arrays;
+
+/**
+ Estimates quantiles of a stream of doubles in constant memory with a KLL sketch (Karnin, Lang,
+ and Liberty).  Values go into level 0.  When the sketch is full, the lowest full level is
+ sorted and every other value (starting at a random one of the first two) moves up a level,
+ where it stands for twice as many values.  Higher levels get geometrically more room, so the
+ rank error is about 1% with k = 400, no matter how many values are offered.  Values are kept as
+ primitive doubles.  The smallest and biggest are tracked exactly.  Two sketches filled by
+ different threads can be merged.  Not thread-safe.
+ */
+final class QuantileSketch {
+    private static final int K = 400;
+    // How much smaller each level's capacity is than the one above.
+    private static final double C = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 8;
+
+    private double[][] levels = new double[][] { new double[MIN_CAPACITY] };
+    private int[] sizes = new int[1];
+    // The capacity of each level and their total, which change when a level is added.
+    private int[] caps = new int[] { K };
+    private int totalCap = K;
+    private int totalSize = 0;
+    // Kept separately, so that quantiles 0.0 and 1.0 are exact.
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    // Used to pick which half of a level moves up.  A fixed seed keeps the answers repeatable.
+    private long randBits = 0x2545f4914f6cdd1dL;
+
+    private void append(int level, double d) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length << 1);
+        }
+        levels[level][sizes[level]] = d;
+        sizes[level] = sizes[level] + 1;
+        totalSize = totalSize + 1;
+    }
+
+    private void addLevel() {
+        int numLevels = levels.length + 1;
+        levels = Arrays.copyOf(levels, numLevels);
+        levels[numLevels - 1] = new double[MIN_CAPACITY];
+        sizes = Arrays.copyOf(sizes, numLevels);
+        caps = new int[numLevels];
+        totalCap = 0;
+        for (int h = 0; h < numLevels; h++) {
+            caps[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(K * Math.pow(C, numLevels - 1 - h)));
+            totalCap = totalCap + caps[h];
+        }
+    }
+
+    /** Adds the value.  Returns this for folding. */
+    QuantileSketch offer(double d) {
+        append(0, d);
+        if (d < min) { min = d; }
+        if (d > max) { max = d; }
+        compress();
+        return this;
+    }
+
+    /** Adds the values the other sketch has seen to this one.  Returns this for combining. */
+    QuantileSketch merge(QuantileSketch other) {
+        while (levels.length < other.levels.length) { addLevel(); }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) { append(h, other.levels[h][i]); }
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+        return this;
+    }
+
+    private void compress() {
+        while (totalSize > totalCap) {
+            int h = 0;
+            while (sizes[h] < caps[h]) { h = h + 1; }
+            if (h + 1 == levels.length) { addLevel(); }
+            double[] level = levels[h];
+            int n = sizes[h];
+            Arrays.sort(level, 0, n);
+            // xorshift
+            randBits = randBits ^ (randBits << 13);
+            randBits = randBits ^ (randBits >>> 7);
+            randBits = randBits ^ (randBits << 17);
+            // With an odd number of values, the biggest one stays behind.
+            int even = n & ~1;
+            for (int i = (int) (randBits & 1); i < even; i = i + 2) { append(h + 1, level[i]); }
+            level[0] = level[n - 1];
+            sizes[h] = n - even;
+            totalSize = totalSize - even;
+        }
+    }
+
+    /**
+     The estimated value at each of the given quantiles (from 0.0 to 1.0).  NaN for each one if
+     nothing was offered.
+     */
+    double[] quantiles(double[] qs) {
+        double[] ret = new double[qs.length];
+        int n = totalSize;
+        if (n == 0) {
+            Arrays.fill(ret, Double.NaN);
+            return ret;
+        }
+        // Each value stands for 2^level values.  Sort them, and add up the weights in order.
+        double[] vals = new double[n];
+        long[] weights = new long[n];
+        int j = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                vals[j] = levels[h][i];
+                weights[j] = 1L << h;
+                j = j + 1;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) { order[i] = i; }
+        Arrays.sort(order, (a, b) -> Double.compare(vals[a], vals[b]));
+        long[] cumWeights = new long[n];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total = total + weights[order[i]];
+            cumWeights[i] = total;
+        }
+        for (int q = 0; q < qs.length; q++) {
+            if ( (qs[q] < 0) || (qs[q] > 1) ) {
+                throw new IllegalArgumentException("Quantiles must be from 0.0 to 1.0, not " +
+                                                   qs[q]);
+            }
+            if (qs[q] == 0) {
+                ret[q] = min;
+                continue;
+            } else if (qs[q] == 1) {
+                ret[q] = max;
+                continue;
+            }
+            long rank = (long) Math.ceil(qs[q] * total);
+            int i = Arrays.binarySearch(cumWeights, rank);
+            if (i < 0) { i = -i - 1; }
+            ret[q] = vals[order[Math.min(i, n - 1)]];
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ A uniform random sample of n items from a stream of unknown length, in one pass with O(n)
+ memory.  This is reservoir sampling with Li's "Algorithm L", which picks how many items to skip
+ before the next replacement instead of drawing a random number for every item, so most items
+ only cost a counter increment.  Each kept item remembers its position, so the sample can be put
+ back in the order the items came in.  Not thread-safe.
+ */
+final class Reservoir {
+    private final int n;
+    private final SplittableRandom rand;
+    private final Object[] items;
+    private final long[] positions;
+    // The number of items offered so far.
+    private long seen = 0;
+    // The position of the next item to put in the reservoir.
+    private long next;
+    private double w;
+
+    Reservoir(int num, long seed) {
+        n = num;
+        rand = new SplittableRandom(seed);
+        items = new Object[n];
+        positions = new long[n];
+        // skip() adds at least 1, so the first candidate is position n.
+        next = n - 1;
+        if (n > 0) {
+            w = Math.exp(Math.log(random()) / n);
+            skip();
+        }
+    }
+
+    // (0, 1], since we take its log.
+    private double random() { return 1.0 - rand.nextDouble(); }
+
+    private void skip() {
+        next = next + (long) Math.floor(Math.log(random()) / Math.log(1 - w)) + 1;
+    }
+
+    /** Considers the item for the sample.  Returns this for folding. */
+    Reservoir offer(Object item) {
+        if (seen < n) {
+            items[(int) seen] = item;
+            positions[(int) seen] = seen;
+        } else if (seen == next) {
+            int i = rand.nextInt(n);
+            items[i] = item;
+            positions[i] = seen;
+            w = w * Math.exp(Math.log(random()) / n);
+            skip();
+        }
+        seen = seen + 1;
+        return this;
+    }
+
+    /** The sampled items, in the order they were offered. */
+    Object[] toArray() {
+        int size = (int) Math.min(seen, n);
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) { order[i] = i; }
+        Arrays.sort(order, (a, b) -> Long.compare(positions[a], positions[b]));
+        Object[] ret = new Object[size];
+        for (int i = 0; i < size; i++) { ret[i] = items[order[i]]; }
+        return ret;
+    }
+}
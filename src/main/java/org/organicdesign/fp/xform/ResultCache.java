@@ -0,0 +1,183 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Remembers the results of folds so that folding the same transformation over the same sources
+ again returns without iterating at all.  The key is a fingerprint of the whole TransDesc chain
+ (sources and functions by identity, drop and take amounts by value) plus the identity and
+ reducer of the fold.  That means this is only correct for sources that are never changed, like
+ PersistentVector or ImList.  For mutable sources, pass a version number that changes every time
+ the source does.  Lambdas that capture variables are new objects each time they are evaluated,
+ so descriptions built from them only match if the description itself is reused.
+
+ Results are shared between callers, so only cache folds whose result you treat as immutable.
+ All methods are synchronized.  Two threads that miss on the same key at the same time will both
+ do the fold.
+ */
+public final class ResultCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    // Access-ordered, so that the eldest entry is the least recently used.
+    private final LinkedHashMap<PlanKey,Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    private ResultCache(int max, long ttl) { maxEntries = max; ttlNanos = ttl; }
+
+    /**
+     Static factory method
+     @param maxEntries the most results to keep.  The least recently used are evicted first.
+     @param ttl how long a result can be used after it's computed.  Zero or less means forever.
+     @param unit the units of the ttl.
+     */
+    public static ResultCache of(int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Makes no sense to cache less than 1 result");
+        }
+        return new ResultCache(maxEntries, (ttl > 0) ? unit.toNanos(ttl) : 0);
+    }
+
+    /** Static factory method for a cache whose entries never expire (but can be evicted). */
+    public static ResultCache of(int maxEntries) { return of(maxEntries, 0, TimeUnit.NANOSECONDS); }
+
+    /** Returns the cached result of td.foldLeft(ident, reducer), doing the fold if necessary. */
+    public <A,B> B foldLeft(TransDesc<A> td, B ident, Function2<B,? super A,B> reducer) {
+        return foldLeft(td, 0, ident, reducer);
+    }
+
+    /**
+     Like foldLeft(td, ident, reducer), but includes a version stamp in the key so that callers
+     with mutable sources can bump the version whenever the sources change.
+     */
+    @SuppressWarnings("unchecked")
+    public <A,B> B foldLeft(TransDesc<A> td, long version, B ident,
+                            Function2<B,? super A,B> reducer) {
+        List<Object> parts = new ArrayList<>();
+        td.fingerprint(parts);
+        parts.add(version);
+        parts.add(ident);
+        parts.add(reducer);
+        PlanKey key = new PlanKey(parts.toArray());
+
+        synchronized (this) {
+            Entry entry = cache.get(key);
+            if (entry != null) {
+                if ( (ttlNanos == 0) || (System.nanoTime() - entry.created < ttlNanos) ) {
+                    hits = hits + 1;
+                    return (B) entry.result;
+                }
+                cache.remove(key);
+                expirations = expirations + 1;
+            }
+            misses = misses + 1;
+        }
+
+        B ret = td.foldLeft(ident, reducer);
+
+        synchronized (this) {
+            cache.put(key, new Entry(ret, System.nanoTime()));
+            while (cache.size() > maxEntries) {
+                cache.remove(cache.keySet().iterator().next());
+                evictions = evictions + 1;
+            }
+        }
+        return ret;
+    }
+
+    /** Throws away all cached results.  The counters are not reset. */
+    public synchronized void clear() { cache.clear(); }
+
+    /** The number of results currently cached (some may have expired). */
+    public synchronized int size() { return cache.size(); }
+
+    /** The number of folds answered from the cache. */
+    public synchronized long hits() { return hits; }
+
+    /** The number of folds that had to be done. */
+    public synchronized long misses() { return misses; }
+
+    /** The number of results thrown away to stay under maxEntries. */
+    public synchronized long evictions() { return evictions; }
+
+    /** The number of results thrown away because they were older than the ttl. */
+    public synchronized long expirations() { return expirations; }
+
+    /** hits / (hits + misses), or 0 if there haven't been any folds yet. */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return (total == 0) ? 0.0 : ((double) hits) / total;
+    }
+
+    @Override public synchronized String toString() {
+        return "ResultCache(size:" + cache.size() + ",maxEntries:" + maxEntries + ",hits:" + hits +
+               ",misses:" + misses + ",evictions:" + evictions + ",expirations:" + expirations + ")";
+    }
+
+    private static final class Entry {
+        final Object result;
+        final long created;
+        Entry(Object r, long c) { result = r; created = c; }
+    }
+
+    /**
+     Compares fingerprint parts.  Numbers, Strings, and Classes are values, so they are compared
+     with equals().  Everything else (sources, functions, accumulators) is compared by identity so
+     that a mutable list that happens to be equal to an older one is not mistaken for it.
+     */
+    private static final class PlanKey {
+        private final Object[] parts;
+        private final int hash;
+
+        PlanKey(Object[] ps) {
+            parts = ps;
+            int h = 1;
+            for (Object o : parts) {
+                h = (31 * h) + (isValue(o) ? o.hashCode() : System.identityHashCode(o));
+            }
+            hash = h;
+        }
+
+        private static boolean isValue(Object o) {
+            return (o instanceof Number) || (o instanceof String) || (o instanceof Class);
+        }
+
+        @Override public int hashCode() { return hash; }
+
+        @Override public boolean equals(Object other) {
+            if (this == other) { return true; }
+            if ( !(other instanceof PlanKey) ) { return false; }
+            PlanKey that = (PlanKey) other;
+            if ( (hash != that.hash) || (parts.length != that.parts.length) ) { return false; }
+            for (int i = 0; i < parts.length; i++) {
+                Object a = parts[i];
+                Object b = that.parts[i];
+                if (isValue(a) ? !a.equals(b) : (a != b)) { return false; }
+            }
+            return true;
+        }
+
+        @Override public String toString() { return "PlanKey" + Arrays.toString(parts); }
+    }
+}
@@ -13,6 +13,9 @@
 
 package org.organicdesign.fp.xform;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,6 +32,9 @@ class RunList implements MutableSourceProvider {
     List<OpRun> list = new ArrayList<>();
     RunList next = null;
     RunList prev = null;
+    // Something to clean up when the fold is done with the source (like the run files of an
+    // ExternalSort), or null.
+    Closeable resource = null;
 
     private RunList(RunList prv, MutableSource src) { prev = prv; source = src; }
     public static RunList of(RunList prv, MutableSource src) {
@@ -37,6 +43,79 @@ class RunList implements MutableSourceProvider {
         return ret;
     }
 
+    /**
+     Adds an op that has to see the whole output, not just the output of the last source.  The
+     same op is added to the list of every source (once per list, since some share), so any state
+     it has is shared too.  That works because the sources are processed one after another.
+     */
+    void addToAll(OpRun op) {
+        RunList rl = this;
+        while (rl != null) {
+            if ( (rl.next == null) || (rl.next.list != rl.list) ) {
+                rl.list.add(op);
+            }
+            rl = rl.prev;
+        }
+    }
+
+    /**
+     Estimates the number of items that will come out of this and all the previous sources.
+     Filters are ignored, so this is an upper bound.
+     @return the estimate, or -1 if there is no way to know (an unknown source or a flatMap).
+     */
+    long sizeEstimate() {
+        long ret = 0;
+        RunList rl = this;
+        while (rl != null) {
+            long srcSize = rl.source.sizeEstimate();
+            if (srcSize < 0) { return -1; }
+            for (OpRun op : rl.list) {
+                if (op.flatMap != null) { return -1; }
+            }
+            ret = ret + srcSize;
+            rl = rl.prev;
+        }
+        return ret;
+    }
+
+    /**
+     Closes the resources of this and all the other runlists before and after it.  Folds call
+     this when they finish, or throw, so that files aren't left open when a take stops early.
+     */
+    void close() {
+        RunList rl = this;
+        while (rl.prev != null) { rl = rl.prev; }
+        for (; rl != null; rl = rl.next) {
+            if (rl.resource != null) {
+                Closeable r = rl.resource;
+                rl.resource = null;
+                try {
+                    r.close();
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException("Couldn't close " + r, ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     A resource that closes all the runlists, for a source that pulls from them (see
+     RunListIterator), so that the fold that reads it also cleans up the ones it didn't finish.
+     */
+    static Closeable closing(RunList... rls) {
+        return () -> {
+            RuntimeException failure = null;
+            for (RunList rl : rls) {
+                try {
+                    rl.close();
+                } catch (RuntimeException re) {
+                    if (failure == null) { failure = re; }
+                }
+            }
+            if (failure != null) { throw failure; }
+        };
+    }
+
     OpRun[] opArray() {
         return list.toArray(new OpRun[list.size()]);
     }
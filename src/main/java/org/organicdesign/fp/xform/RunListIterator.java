@@ -0,0 +1,95 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ Pulls the output of a compiled RunList (and the ones after it) one item at a time, for when
+ something needs to step through two transformations side by side instead of folding them.  It
+ follows the same rules as TransDesc's fold loop: filters skip items, maps replace them (a
+ TERMINATE ends the source or flatMap it's working on), and a flatMap pushes its output onto a
+ CursorStack, to be run through the ops after it.  Not thread-safe.
+ */
+final class RunListIterator implements Iterator<Object> {
+    // The next RunList to start on.
+    private RunList nextRunList;
+    // Closed (see RunList.close()) once everything has been pulled.
+    private final RunList first;
+    private OpRun[] ops;
+    // The source, then the output of each flatMap being worked on.
+    private final CursorStack stack = new CursorStack();
+    private Object nextItem = null;
+    private boolean ready = false;
+
+    RunListIterator(RunList runList) {
+        while (runList.prev != null) { runList = runList.prev; }
+        nextRunList = runList;
+        first = runList;
+    }
+
+    /** Finds the next item that makes it through all the ops.  False if there are no more. */
+    @SuppressWarnings("unchecked")
+    private boolean advance() {
+        itemLoop:
+        while (true) {
+            if (stack.isEmpty()) {
+                if (nextRunList == null) {
+                    first.close();
+                    return false;
+                }
+                ops = nextRunList.opArray();
+                stack.pushIterator(nextRunList.source, 0);
+                nextRunList = nextRunList.next;
+            }
+            Object o = stack.next();
+            if (o == CursorStack.END) {
+                stack.pop();
+                continue;
+            }
+            for (int j = stack.opIdx(); j < ops.length; j++) {
+                OpRun op = ops[j];
+                if ( (op.filter != null) && !op.filter.test(o) ) { continue itemLoop; }
+                if (op.map != null) {
+                    o = op.map.apply(o);
+                    if (o == TransDesc.TERMINATE) {
+                        stack.pop();
+                        continue itemLoop;
+                    }
+                } else if (op.flatMap != null) {
+                    stack.push(op.flatMap.apply(o), j + 1);
+                    continue itemLoop;
+                }
+            }
+            nextItem = o;
+            return true;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean hasNext() {
+        if (!ready) { ready = advance(); }
+        return ready;
+    }
+
+    /** {@inheritDoc} */
+    @Override public Object next() {
+        if (!hasNext()) { throw new NoSuchElementException("No more items"); }
+        ready = false;
+        Object ret = nextItem;
+        nextItem = null;
+        return ret;
+    }
+}
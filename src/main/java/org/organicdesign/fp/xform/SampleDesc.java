@@ -0,0 +1,91 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ Describes a uniform random sample of n items, kept in the order they came in.  The same seed
+ gives the same sample of the same input.
+
+ When the transformation so far is just a List or array source, this picks n random indexes
+ (Floyd's algorithm, so O(n) time and memory no matter how big the source is) and reads only
+ those items, the way drops and takes are done with index arithmetic on the source.  Otherwise,
+ it runs everything before it once through a Reservoir.  Either way, the sample becomes an array
+ source for the rest of the transformation.
+ @param <T> the type of the items.
+ */
+class SampleDesc<T> extends TransDesc<T> {
+    final int n;
+    final long seed;
+
+    SampleDesc(TransDesc<T> prev, int num, long s) { super(prev); n = num; seed = s; }
+
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        Object[] items;
+        if ( (ret.prev == null) && ret.list.isEmpty() &&
+             (ret.source instanceof MutableSource.MutableListSource) ) {
+            items = pick((MutableSource.MutableListSource) ret.source);
+        } else {
+            Function2<Reservoir,Object,Reservoir> offer = Reservoir::offer;
+            items = TransDesc.foldRunList(ret, new Reservoir(n, seed), offer).toArray();
+        }
+        return RunList.of(null, new MutableSource.MutableArraySource<>(items, 0));
+    }
+
+    private Object[] pick(MutableSource.MutableListSource src) {
+        int numItems = src.size - src.idx;
+        int[] idxs = new int[Math.min(n, numItems)];
+        if (idxs.length == numItems) {
+            for (int i = 0; i < numItems; i++) { idxs[i] = src.idx + i; }
+        } else {
+            // Floyd's algorithm: each j adds one new index, either a random one below it or j.
+            SplittableRandom rand = new SplittableRandom(seed);
+            OpenHashSet picked = new OpenHashSet(idxs.length);
+            int k = 0;
+            for (int j = numItems - idxs.length; j < numItems; j++) {
+                int t = rand.nextInt(j + 1);
+                if (!picked.addInt(t)) {
+                    t = j;
+                    picked.addInt(j);
+                }
+                idxs[k] = t;
+                k = k + 1;
+            }
+            Arrays.sort(idxs);
+            for (int i = 0; i < idxs.length; i++) { idxs[i] = src.idx + idxs[i]; }
+        }
+        Object[] ret = new Object[idxs.length];
+        if (src instanceof MutableSource.MutableArraySource) {
+            Object[] itemArray = ((MutableSource.MutableArraySource) src).itemArray;
+            for (int i = 0; i < idxs.length; i++) { ret[i] = itemArray[idxs[i]]; }
+        } else {
+            for (int i = 0; i < idxs.length; i++) { ret[i] = src.items.get(idxs[i]); }
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(SampleDesc.class);
+        parts.add(n);
+        parts.add(seed);
+    }
+}
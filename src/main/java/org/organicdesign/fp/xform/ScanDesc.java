@@ -0,0 +1,126 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Describes a running fold that outputs the accumulator after each item.  Serially, that's just an
+ op-code holding the accumulator.  The op goes on every source, so the running total continues
+ across concatenations.
+
+ In parallel mode (with a combiner), when the transformation so far can be split (see
+ ParallelFold), this is a two-pass prefix scan over ranges of the source:
+ <ol>
+ <li>Each range runs its ops into its own list of items and folds those from ident into a
+ partial result.</li>
+ <li>The partial results are combined in order to get the accumulator at the start of each
+ range.  Each range then scans its items from there, writing the results into its part of a
+ single output array.</li>
+ </ol>
+ The output array then becomes the source for the rest of the transformation.  Otherwise (or if
+ a later take only needs part of the output), it's a serial scan.
+ @param <T> the type of the items.
+ @param <U> the type of the accumulator.
+ */
+class ScanDesc<T,U> extends TransDesc<U> {
+    final U ident;
+    final Function2<U,? super T,U> f;
+    // null for a serial scan
+    final Function2<U,U,U> combiner;
+
+    ScanDesc(TransDesc<T> prev, U i, Function2<U,? super T,U> func, Function2<U,U,U> c) {
+        super(prev); ident = i; f = func; combiner = c;
+    }
+
+    @Override RunList toRunList() { return toRunList(Long.MAX_VALUE); }
+
+    /** A scan produces one item for each input, so it can pass the limit along. */
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList(long limit) {
+        RunList ret = prevOp.toRunList(limit);
+        if (combiner != null) {
+            MutableSource.MutableListSource src = ParallelFold.splittableSource(ret);
+            if ( (src != null) && (limit >= src.size - src.idx) &&
+                 (src.size - src.idx > ParallelFold.rangeSize(src.size - src.idx)) ) {
+                return RunList.of(null, new MutableSource.MutableArraySource<>(
+                        parallelScan(src, ret.opArray()), 0));
+            }
+        }
+        ret.addToAll(new OpRun.ScanRun(ident, (Function2<Object,Object,Object>) f));
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] parallelScan(MutableSource.MutableListSource src, OpRun[] ops) {
+        int numItems = src.size - src.idx;
+        int rangeSize = ParallelFold.rangeSize(numItems);
+        int numRanges = (numItems + rangeSize - 1) / rangeSize;
+        Object[][] items = new Object[numRanges][];
+        Object[] sums = new Object[numRanges];
+        Function2<List<Object>,Object,List<Object>> add = (accum, o) -> {
+            accum.add(o);
+            return accum;
+        };
+
+        // Pass 1: run the ops and fold each range from ident.
+        ParallelFold.forEachRange(numRanges, r -> {
+            int from = src.idx + r * rangeSize;
+            RunList rl = RunList.of(null, src.subRange(from, Math.min(from + rangeSize, src.size)));
+            for (OpRun op : ops) { rl.list.add(op.copyForRun()); }
+            Object[] rangeItems = TransDesc.foldRunList(rl, new ArrayList<>(), add).toArray();
+            U sum = ident;
+            for (Object o : rangeItems) { sum = f.apply(sum, (T) o); }
+            items[r] = rangeItems;
+            sums[r] = sum;
+        });
+
+        // The accumulator and output index at the start of each range.
+        Object[] starts = new Object[numRanges];
+        int[] offsets = new int[numRanges];
+        U accum = ident;
+        int total = 0;
+        for (int r = 0; r < numRanges; r++) {
+            starts[r] = accum;
+            offsets[r] = total;
+            accum = combiner.apply(accum, (U) sums[r]);
+            total = total + items[r].length;
+        }
+
+        // Pass 2: scan each range from its starting accumulator.
+        Object[] ret = new Object[total];
+        ParallelFold.forEachRange(numRanges, r -> {
+            U a = (U) starts[r];
+            int j = offsets[r];
+            for (Object o : items[r]) {
+                a = f.apply(a, (T) o);
+                ret[j] = a;
+                j = j + 1;
+            }
+        });
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(ScanDesc.class);
+        parts.add(ident);
+        parts.add(f);
+        parts.add(combiner);
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function1;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ Describes a cheap pre-filter for a join: items whose keys are definitely not among the given
+ keys are dropped, using a Bloom filter built once from the keys.  A small fraction of items with
+ other keys get through too, so this only saves work: the join (or whatever exact check comes
+ later) still decides.  The Bloom filter is read-only, so this can be split for parallel folds.
+ @param <T> the type of the items.
+ */
+class SemiJoinDesc<T> extends TransDesc<T> {
+    final Iterable<?> keys;
+    final Function1<? super T,?> keyFn;
+    final BloomFilter bloom;
+
+    SemiJoinDesc(TransDesc<T> prev, Iterable<?> ks, Function1<? super T,?> kf) {
+        super(prev); keys = ks; keyFn = kf;
+        // The filter has to be sized before adding anything.
+        Collection<?> coll;
+        if (keys instanceof Collection) {
+            coll = (Collection<?>) keys;
+        } else {
+            List<Object> ls = new ArrayList<>();
+            for (Object k : keys) { ls.add(k); }
+            coll = ls;
+        }
+        bloom = new BloomFilter(coll.size());
+        for (Object k : coll) { bloom.add(k); }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        RunList ret = prevOp.toRunList();
+        ret.list.add(new OpRun.SemiJoinRun(bloom, (Function1<Object,?>) keyFn));
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(SemiJoinDesc.class);
+        parts.add(keys);
+        parts.add(keyFn);
+    }
+}
@@ -0,0 +1,88 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ Describes a (stable) sort.  Sorting has to see every item before it can produce the first one,
+ so this materializes everything before it into an array, sorts that, and becomes a new array
+ source.  Drops and takes after the sort are then index arithmetic on that array.
+
+ When a later take (or drop and take) means only the first k items will be used, the planner
+ calls toRunList(k) and this keeps only the k smallest items in a BoundedHeap instead of sorting
+ everything: O(k) memory and O(n log k) time.  In parallel mode, each range of the source keeps
+ its own heap and the heaps are merged.
+ @param <T> the type of the items.
+ */
+class SortedDesc<T> extends TransDesc<T> {
+    final Comparator<? super T> comp;
+    final boolean parallel;
+
+    SortedDesc(TransDesc<T> prev, Comparator<? super T> c, boolean p) {
+        super(prev); comp = c; parallel = p;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        TransDesc<T> prev = (TransDesc<T>) prevOp;
+        Object[] items;
+        if (parallel) {
+            items = ParallelFold.fold(prev, ArrayList<T>::new,
+                                      (List<T> accum, T item) -> {
+                                          accum.add(item);
+                                          return accum;
+                                      },
+                                      (l1, l2) -> {
+                                          l1.addAll(l2);
+                                          return l1;
+                                      }).toArray();
+            Arrays.parallelSort((T[]) items, comp);
+        } else {
+            items = prev.foldLeft(new ArrayList<T>(), (List<T> accum, T item) -> {
+                accum.add(item);
+                return accum;
+            }).toArray();
+            Arrays.sort((T[]) items, comp);
+        }
+        return RunList.of(null, new MutableSource.MutableArraySource<>(items, 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList(long limit) {
+        // Too big to be a top-k.
+        if (limit >= Integer.MAX_VALUE) { return toRunList(); }
+        TransDesc<T> prev = (TransDesc<T>) prevOp;
+        int k = (int) limit;
+        BoundedHeap<T> heap;
+        if (parallel) {
+            heap = ParallelFold.fold(prev, () -> new BoundedHeap<>(k, comp), BoundedHeap::offer,
+                                     BoundedHeap::merge);
+        } else {
+            heap = prev.foldLeft(new BoundedHeap<>(k, comp), BoundedHeap::offer);
+        }
+        return RunList.of(null, new MutableSource.MutableArraySource<>(heap.toSortedArray(), 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(SortedDesc.class);
+        parts.add(comp);
+        parts.add(parallel ? 1 : 0);
+    }
+}
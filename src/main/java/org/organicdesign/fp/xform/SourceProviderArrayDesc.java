@@ -13,6 +13,8 @@
 
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 class SourceProviderArrayDesc<T> extends TransDesc<T> {
     final T[] list;
     SourceProviderArrayDesc(T[] l) { super(null); list = l; }
@@ -21,4 +23,8 @@ class SourceProviderArrayDesc<T> extends TransDesc<T> {
         // could be faster, so I keep it around just in case.
         return RunList.of(null, new MutableSource.MutableArraySource<>(list, 0));
     }
+    @Override void fingerprint(List<Object> parts) {
+        parts.add(SourceProviderArrayDesc.class);
+        parts.add(list);
+    }
 }
@@ -0,0 +1,48 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ The selected rows of some Columns, made into items.  The predicates are run when this is
+ compiled, leaving an array of selected row indexes, and a lazy list over it makes each item when
+ it's read.
+ @param <T> the type of the items.
+ */
+class SourceProviderColumnsDesc<T> extends TransDesc<T> {
+    final Columns columns;
+    final IntFunction<? extends T> rowFn;
+
+    SourceProviderColumnsDesc(Columns cols, IntFunction<? extends T> f) {
+        super(null); columns = cols; rowFn = f;
+    }
+
+    @Override RunList toRunList() {
+        return RunList.of(null, new MutableSource.MutableListSource<>(
+                new Rows<T>(columns.selectedRows(), rowFn), 0));
+    }
+
+    private static final class Rows<T> extends AbstractList<T> implements RandomAccess {
+        private final int[] rows;
+        private final IntFunction<? extends T> rowFn;
+
+        Rows(int[] r, IntFunction<? extends T> f) { rows = r; rowFn = f; }
+
+        @Override public T get(int i) { return rowFn.apply(rows[i]); }
+        @Override public int size() { return rows.length; }
+    }
+}
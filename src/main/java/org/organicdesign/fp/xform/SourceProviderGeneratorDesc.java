@@ -0,0 +1,29 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+class SourceProviderGeneratorDesc<T> extends TransDesc<T> {
+    final Supplier<? extends T> supplier;
+    SourceProviderGeneratorDesc(Supplier<? extends T> s) { super(null); supplier = s; }
+    @Override RunList toRunList() {
+        return RunList.of(null, new MutableSource.MutableGeneratorSource<>(supplier));
+    }
+    @Override void fingerprint(List<Object> parts) {
+        parts.add(SourceProviderGeneratorDesc.class);
+        parts.add(supplier);
+    }
+}
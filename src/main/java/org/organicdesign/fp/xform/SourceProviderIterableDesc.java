@@ -13,10 +13,16 @@
 
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 class SourceProviderIterableDesc<T> extends TransDesc<T> {
     final Iterable<? extends T> list;
     SourceProviderIterableDesc(Iterable<? extends T> l) { super(null); list = l; }
     @Override RunList toRunList() {
-        return RunList.of(null, new MutableSource.MutableIterableSource<>(list));
+        return RunList.of(null, MutableSource.of(list));
+    }
+    @Override void fingerprint(List<Object> parts) {
+        parts.add(SourceProviderIterableDesc.class);
+        parts.add(list);
     }
 }
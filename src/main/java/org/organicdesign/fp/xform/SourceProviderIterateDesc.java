@@ -0,0 +1,45 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function1;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/** seed, f(seed), f(f(seed)), and so on. */
+class SourceProviderIterateDesc<T> extends TransDesc<T> {
+    final T seed;
+    final Function1<? super T,? extends T> f;
+    SourceProviderIterateDesc(T s, Function1<? super T,? extends T> func) {
+        super(null); seed = s; f = func;
+    }
+    @Override RunList toRunList() {
+        // A new supplier for each run, since it remembers the last item.
+        Supplier<T> supplier = new Supplier<T>() {
+            private T next = seed;
+            @Override public T get() {
+                T ret = next;
+                next = f.apply(next);
+                return ret;
+            }
+        };
+        return RunList.of(null, new MutableSource.MutableGeneratorSource<>(supplier));
+    }
+    @Override void fingerprint(List<Object> parts) {
+        parts.add(SourceProviderIterateDesc.class);
+        parts.add(seed);
+        parts.add(f);
+    }
+}
@@ -23,6 +23,10 @@ class SourceProviderListDesc<T> extends TransDesc<T> {
     final List<? extends T> list;
     SourceProviderListDesc(List<? extends T> l) { super(null); list = l; }
     @Override RunList toRunList() {
-        return RunList.of(null, new MutableSource.MutableListSource<>(list, 0));
+        return RunList.of(null, MutableSource.of(list));
+    }
+    @Override void fingerprint(List<Object> parts) {
+        parts.add(SourceProviderListDesc.class);
+        parts.add(list);
     }
 }
@@ -0,0 +1,74 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ The numbers from start (inclusive) to end (exclusive) by step, which may be negative.  A range
+ that can be indexed with an int is a lazy list, so it gets everything a list source gets:
+ drops and takes as index arithmetic and splitting for parallel folds.  Longer ones are a
+ MutableRangeSource.  The numbers are computed when they're needed, never stored.
+ */
+class SourceProviderRangeDesc extends TransDesc<Long> {
+    final long start;
+    final long end;
+    final long step;
+    SourceProviderRangeDesc(long s, long e, long stp) {
+        super(null); start = s; end = e; step = stp;
+    }
+
+    /** How many numbers are in the range, or Long.MAX_VALUE if that's too many to count. */
+    long count() {
+        if ( (step > 0) ? (end <= start) : (end >= start) ) { return 0; }
+        // The distance is computed unsigned, since it can be more than Long.MAX_VALUE.
+        long ret = (step > 0) ? Long.divideUnsigned(end - start - 1, step) :
+                   Long.divideUnsigned(start - end - 1, -step);
+        return ( (ret < 0) || (ret == Long.MAX_VALUE) ) ? Long.MAX_VALUE : ret + 1;
+    }
+
+    @Override RunList toRunList() {
+        long count = count();
+        if (count <= Integer.MAX_VALUE) {
+            return RunList.of(null, new MutableSource.MutableListSource<>(
+                    new LongRange(start, step, (int) count), 0));
+        }
+        return RunList.of(null, new MutableSource.MutableRangeSource(start, step, count));
+    }
+
+    private static final class LongRange extends AbstractList<Long> implements RandomAccess {
+        private final long start;
+        private final long step;
+        private final int size;
+
+        LongRange(long s, long stp, int sz) { start = s; step = stp; size = sz; }
+
+        @Override public Long get(int i) {
+            if ( (i < 0) || (i >= size) ) {
+                throw new IndexOutOfBoundsException("Index: " + i + " size: " + size);
+            }
+            return start + i * step;
+        }
+        @Override public int size() { return size; }
+    }
+
+    @Override void fingerprint(List<Object> parts) {
+        parts.add(SourceProviderRangeDesc.class);
+        parts.add(start);
+        parts.add(end);
+        parts.add(step);
+    }
+}
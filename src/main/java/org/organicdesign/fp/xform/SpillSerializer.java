@@ -0,0 +1,46 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ Writes items to, and reads them back from, the temporary files used when a sort is too big for
+ memory (see TransDesc.sorted(Comparator, SpillSerializer, int)).  Each item is read back by the
+ same serializer that wrote it, in the same order, so there's no need to write any framing or
+ type information beyond what read() needs to know where the item ends.
+ @param <T> the type of the items.
+ */
+public interface SpillSerializer<T> {
+    void write(T item, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    /** Writes Strings with writeUTF(), so each has to be less than 64K when encoded. */
+    SpillSerializer<String> STRING = new SpillSerializer<String>() {
+        @Override public void write(String item, DataOutput out) throws IOException {
+            out.writeUTF(item);
+        }
+        @Override public String read(DataInput in) throws IOException { return in.readUTF(); }
+    };
+
+    SpillSerializer<Long> LONG = new SpillSerializer<Long>() {
+        @Override public void write(Long item, DataOutput out) throws IOException {
+            out.writeLong(item);
+        }
+        @Override public Long read(DataInput in) throws IOException { return in.readLong(); }
+    };
+}
@@ -0,0 +1,77 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ Describes a stable sort that may be too big for memory.  Everything before it is folded into an
+ ExternalSort, which spills sorted runs to temporary files whenever maxInMemory items have been
+ buffered.  If nothing was spilled, this becomes an array source just like SortedDesc.  Otherwise
+ it becomes an iterable source that streams the k-way merge of the runs into the rest of the
+ pipeline, so the sorted output never has to fit in memory either.  The sorter is the resource
+ of that source's RunList, so the fold closes it (and deletes the run files) when it's done.
+ When a take means only the first few items will be used and they fit in memory, this is a
+ top-k with a BoundedHeap instead, and nothing is written to disk.
+ @param <T> the type of the items.
+ */
+class SpillSortDesc<T> extends TransDesc<T> {
+    final Comparator<? super T> comp;
+    final SpillSerializer<T> serializer;
+    final int maxInMemory;
+
+    SpillSortDesc(TransDesc<T> prev, Comparator<? super T> c, SpillSerializer<T> s, int max) {
+        super(prev); comp = c; serializer = s; maxInMemory = max;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList() {
+        ExternalSort<T> sorter = new ExternalSort<>(comp, serializer, maxInMemory);
+        try {
+            ((TransDesc<T>) prevOp).foldLeft(sorter, ExternalSort::add);
+        } catch (RuntimeException | Error e) {
+            sorter.close();
+            throw e;
+        }
+        if (sorter.fitInMemory()) {
+            return RunList.of(null,
+                              new MutableSource.MutableArraySource<>(sorter.sortedInMemory(), 0));
+        }
+        Iterator<T> merged = sorter.merge();
+        Iterable<T> once = () -> merged;
+        RunList ret = RunList.of(null, new MutableSource.MutableIterableSource<>(once));
+        // Whatever folds this closes it, deleting the run files even if it stops early.
+        ret.resource = sorter;
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList(long limit) {
+        if (limit > maxInMemory) { return toRunList(); }
+        BoundedHeap<T> heap = ((TransDesc<T>) prevOp).foldLeft(
+                new BoundedHeap<>((int) limit, comp), BoundedHeap::offer);
+        return RunList.of(null, new MutableSource.MutableArraySource<>(heap.toSortedArray(), 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(SpillSortDesc.class);
+        parts.add(comp);
+        parts.add(serializer);
+        parts.add(maxInMemory);
+    }
+}
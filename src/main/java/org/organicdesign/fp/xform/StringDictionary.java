@@ -0,0 +1,79 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Gives each distinct String an int code (0, 1, 2... in the order they're first seen) so that
+ low-cardinality string data can be stored as an int[] of codes (see EncodedStrings).  One
+ dictionary can be shared by many columns, so equal strings get the same code everywhere and
+ codes from different columns can be compared directly.  Null is a string like any other.
+ Thread-safe: only encode() locks, so decoding every row of a column never waits.
+ */
+public final class StringDictionary {
+    // ConcurrentHashMap doesn't allow null keys, so null is stored as this.
+    private static final Object NULL_KEY = new Object();
+
+    private final Map<Object,Integer> codes = new ConcurrentHashMap<>();
+    // Only grows, by copying, so a reader always sees a full array.  Everything below size is set
+    // before size is, so a reader that reads size first sees them.
+    private volatile String[] strings = new String[16];
+    private volatile int size = 0;
+
+    private StringDictionary() {}
+
+    /** Static factory method */
+    public static StringDictionary of() { return new StringDictionary(); }
+
+    private static Object key(String s) { return (s == null) ? NULL_KEY : s; }
+
+    /** The code for the string, giving it the next code if it doesn't have one yet. */
+    public synchronized int encode(String s) {
+        Object key = key(s);
+        Integer ret = codes.get(key);
+        if (ret != null) { return ret; }
+        int code = size;
+        String[] strs = strings;
+        if (code == strs.length) {
+            strs = Arrays.copyOf(strs, code << 1);
+            strs[code] = s;
+            strings = strs;
+        } else {
+            strs[code] = s;
+        }
+        size = code + 1;
+        codes.put(key, code);
+        return code;
+    }
+
+    /** The code for the string, or -1 if it doesn't have one. */
+    public int codeOf(String s) {
+        Integer ret = codes.get(key(s));
+        return (ret == null) ? -1 : ret;
+    }
+
+    /** The string for the code. */
+    public String decode(int code) {
+        if ( (code < 0) || (code >= size) ) {
+            throw new IndexOutOfBoundsException("No string for code " + code);
+        }
+        return strings[code];
+    }
+
+    /** The number of distinct strings (and one more than the biggest code). */
+    public int size() { return size; }
+}
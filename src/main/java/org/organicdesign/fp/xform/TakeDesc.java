@@ -13,6 +13,8 @@
 
 package org.organicdesign.fp.xform;
 
+import java.util.List;
+
 /**
  Describes a "take" operation.  Takes will be pushed as early in the operation-list as possible,
  ideally being done using one-time pointer addition on the source.  When that is not possible,
@@ -27,7 +29,8 @@ class TakeDesc<T> extends TransDesc<T> {
     @SuppressWarnings("unchecked")
     @Override RunList toRunList() {
 //                System.out.println("in toRunList() for take");
-        RunList ret = prevOp.toRunList();
+        // Let earlier ops (like sorted) know that only the first few items will be used.
+        RunList ret = prevOp.toRunList(take);
         int i = ret.list.size() - 1;
 //              System.out.println("\tchecking previous items to see if they can handle a take...");
         OpStrategy earlierTs = null;
@@ -54,4 +57,11 @@ class TakeDesc<T> extends TransDesc<T> {
         ret.list.add(new OpRun.TakeRun(take));
         return ret;
     }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(TakeDesc.class);
+        parts.add(take);
+    }
 }
@@ -17,8 +17,15 @@ import org.organicdesign.fp.Transformable;
 import org.organicdesign.fp.function.Function1;
 import org.organicdesign.fp.function.Function2;
 
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 
 // We model this as a linked list so that each transition can have it's own output type, building a
 // type-safe bridge from first operation to the last.
@@ -33,8 +40,6 @@ public abstract class TransDesc<A> implements Transformable<A> {
     enum OpStrategy { HANDLE_INTERNALLY, ASK_SUPPLIER, CANNOT_HANDLE; }
 
     static final Object TERMINATE = new Object();
-    @SuppressWarnings("unchecked")
-    private A terminate() { return (A) TERMINATE; }
 
     // This is just a sample usage to be sure it compiles.
 //    Integer total = from(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9))
@@ -59,6 +64,32 @@ public abstract class TransDesc<A> implements Transformable<A> {
         return new SourceProviderIterableDesc<>(list);
     }
 
+    /**
+     Calls the supplier for each item, with no end, so use take() or takeWhile().  A take is
+     pushed down to the source, so the supplier is never called for more items than that.
+     */
+    public static <T> TransDesc<T> generate(Supplier<? extends T> supplier) {
+        return new SourceProviderGeneratorDesc<>(supplier);
+    }
+
+    /**
+     seed, f(seed), f(f(seed)), and so on, with no end, so use take() or takeWhile().  A take is
+     pushed down to the source, so f is never called for more items than that.
+     */
+    public static <T> TransDesc<T> iterate(T seed, Function1<? super T,? extends T> f) {
+        return new SourceProviderIterateDesc<>(seed, f);
+    }
+
+    /**
+     The numbers from start (inclusive) to end (exclusive), counting by step (which can be
+     negative).  They are computed as they're used, never stored, and drops and takes are just
+     arithmetic.  Ranges that fit in an int can be split for parallel folds like a List.
+     */
+    public static TransDesc<Long> range(long start, long end, long step) {
+        if (step == 0) { throw new IllegalArgumentException("Can't have a step of zero"); }
+        return new SourceProviderRangeDesc(start, end, step);
+    }
+
     // ========================================= Instance =========================================
 
     // Fields
@@ -76,8 +107,10 @@ public abstract class TransDesc<A> implements Transformable<A> {
     // is 2.6 times faster than wrapping items type-safely in Options and 10 to 100 times faster
     // than lazily evaluated and cached linked-list, Sequence model.
     @SuppressWarnings("unchecked")
-    private <H> H _foldLeft(Iterable source, OpRun[] ops, int opIdx, H ident, Function2 reducer) {
+    private static <H> H _foldLeft(Iterable source, OpRun[] ops, int opIdx, H ident, Function2 reducer) {
         Object ret = ident;
+        // Made on the first flatMap, then reused for every item after that.
+        CursorStack stack = null;
 
         // This is a label - the first one I have used in Java in years, or maybe ever.
         // I'm assuming this is fast, but will have to test to confirm it.
@@ -85,7 +118,7 @@ public abstract class TransDesc<A> implements Transformable<A> {
         for (Object o : source) {
             for (int j = opIdx; j < ops.length; j++) {
                 OpRun op = ops[j];
-                if ( (op.filter != null) && !op.filter.apply(o) ) {
+                if ( (op.filter != null) && !op.filter.test(o) ) {
                     // stop processing this source item and go to the next one.
                     continue sourceLoop;
                 }
@@ -98,7 +131,9 @@ public abstract class TransDesc<A> implements Transformable<A> {
                         return (H) ret;
                     }
                 } else if (op.flatMap != null) {
-                    ret = _foldLeft(op.flatMap.apply(o), ops, j + 1, (H) ret, reducer);
+                    if (stack == null) { stack = new CursorStack(); }
+                    stack.push(op.flatMap.apply(o), j + 1);
+                    ret = _foldNested(stack, ops, ret, reducer);
                     // stop processing this source item and go to the next one.
                     continue sourceLoop;
                 }
@@ -112,6 +147,184 @@ public abstract class TransDesc<A> implements Transformable<A> {
         return (H) ret;
     } // end _foldLeft();
 
+    /**
+     Folds the output of a flatMap through the ops after it.  This is the same loop as _foldLeft(),
+     but instead of calling itself for nested flatMaps, it keeps them in a CursorStack.  A
+     TERMINATE ends the flatMap output it came from, just like returning from _foldLeft() would.
+     Returns when the stack is empty.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object _foldNested(CursorStack stack, OpRun[] ops, Object ident,
+                                      Function2 reducer) {
+        Object ret = ident;
+
+        itemLoop:
+        while (!stack.isEmpty()) {
+            Object o = stack.next();
+            if (o == CursorStack.END) {
+                stack.pop();
+                continue;
+            }
+            for (int j = stack.opIdx(); j < ops.length; j++) {
+                OpRun op = ops[j];
+                if ( (op.filter != null) && !op.filter.test(o) ) { continue itemLoop; }
+                if (op.map != null) {
+                    o = op.map.apply(o);
+                    if (o == TERMINATE) {
+                        stack.pop();
+                        continue itemLoop;
+                    }
+                } else if (op.flatMap != null) {
+                    stack.push(op.flatMap.apply(o), j + 1);
+                    continue itemLoop;
+                }
+            }
+            ret = reducer.apply(ret, o);
+        }
+        return ret;
+    } // end _foldNested();
+
+    /** Folds the given runlist and all the ones before and after it, in order. */
+    @SuppressWarnings("unchecked")
+    static <B> B foldRunList(RunList runList, B ident, Function2 reducer) {
+        // Go back to the first runlist:
+        while (runList.prev != null) { runList = runList.prev; }
+        CancelDesc.checkInnerFold(runList);
+
+        // Process the runlists in order.
+        RunList first = runList;
+        B ret = ident;
+        try {
+            while (runList != null) {
+                // Actually do the fold.
+                ret = _foldLeft(runList, runList.opArray(), 0, ret, reducer);
+                runList = runList.next;
+            }
+        } finally {
+            first.close();
+        }
+        return ret;
+    }
+
+    // =============================================================================================
+
+    /**
+     Like optimizeFilters(), but adjusts the order of the independent filters (see
+     filterIndependent()) while the fold runs, for long folds where which filter throws the most
+     away changes with the data.  Other filters are never moved and end the runs of filters.  The
+     first 1024 items, and 1024 items out of every 65536 after that, are run through every filter
+     in a run and timed, then the filters are reordered for the items after that.  Each run of
+     filters has its own state, so a fold with adaptive filters isn't split for parallel folds.
+     */
+    public TransDesc<A> adaptiveFilters() { return adaptiveFilters(1024, 65536); }
+
+    /**
+     Like adaptiveFilters(), but measuring window items at the start of every period items.
+     */
+    public TransDesc<A> adaptiveFilters(int window, long period) {
+        if ( (window < 1) || (period < window) ) {
+            throw new IllegalArgumentException("Need 1 <= window <= period");
+        }
+        return new AdaptiveFiltersDesc<>(this, window, period);
+    }
+
+    /**
+     Estimates the number of distinct items with a HyperLogLog sketch: about 0.8% standard error
+     using 16KB of memory, no matter how many items there are.  Longs, Integers, and Doubles are
+     hashed by value, and Strings by all 64 bits of a hash of their chars.  Other items are hashed
+     by hashCode(), so unequal items with equal hashCodes count as one.
+     */
+    public long approxDistinct() {
+        return foldLeft(new HyperLogLog(), HyperLogLog::offer).estimate();
+    }
+
+    /**
+     Like approxDistinct(), but splits a List or array source into ranges that each fill their own
+     sketch on the ForkJoinPool.commonPool(), then merges the sketches (see groupByParallel()).
+     */
+    public long approxDistinctParallel() {
+        return ParallelFold.fold(this, HyperLogLog::new, HyperLogLog::offer, HyperLogLog::merge)
+                           .estimate();
+    }
+
+    /**
+     Estimates the values at the given quantiles (from 0.0 to 1.0, so 0.5 is the median) of the
+     numbers from the function, with a KLL sketch that keeps a few thousand doubles no matter how
+     many items there are.  The answers are usually within 1% of the requested rank.  The result
+     is NaN for every quantile if there are no items.
+     */
+    public double[] approxQuantiles(ToDoubleFunction<? super A> f, double... quantiles) {
+        return foldLeft(new QuantileSketch(),
+                        (sketch, a) -> sketch.offer(f.applyAsDouble(a))).quantiles(quantiles);
+    }
+
+    /**
+     Like approxQuantiles(), but splits a List or array source into ranges that each fill their
+     own sketch on the ForkJoinPool.commonPool(), then merges the sketches.
+     */
+    public double[] approxQuantilesParallel(ToDoubleFunction<? super A> f,
+                                            double... quantiles) {
+        return ParallelFold.fold(this, QuantileSketch::new,
+                                 (sketch, a) -> sketch.offer(f.applyAsDouble(a)),
+                                 QuantileSketch::merge).quantiles(quantiles);
+    }
+
+    /**
+     Materializes the output of this transformation the first time anything folds over it, so
+     that all the pipelines built from the result share the work instead of each recomputing it.
+     The items are kept in PrefixCache.DEFAULT.  Only use this when the underlying sources are not
+     going to change, or clear the cache when they do.
+     */
+    public TransDesc<A> cache() { return new CacheDesc<>(this, PrefixCache.DEFAULT); }
+
+    /** Like cache(), but keeps the materialized items in the given PrefixCache. */
+    public TransDesc<A> cache(PrefixCache pool) { return new CacheDesc<>(this, pool); }
+
+    /**
+     Makes folds of this transformation (serial or parallel) check the token every thousand or so
+     source items, and stop with a FoldCancelledException once it's cancelled or past its
+     deadline.  The check counts source items, not the output of flatMaps.  That includes the
+     folds that a sort, join, sample, or cache before this does to gather its input, but not the
+     sorting itself.
+     */
+    public TransDesc<A> cancelWith(CancelToken token) { return new CancelDesc<>(this, token); }
+
+    /**
+     Adds each item to a mutable container (from the supplier) with the accumulator, and returns
+     the container.  Unlike foldLeft(), nothing has to be returned per item, so the container can
+     be updated in place without pretending to be immutable.
+     */
+    public <R> R collect(Supplier<R> supplier, BiConsumer<R,? super A> accumulator) {
+        Function2<R,A,R> reducer = (r, a) -> {
+            accumulator.accept(r, a);
+            return r;
+        };
+        return foldLeft(supplier.get(), reducer);
+    }
+
+    /**
+     Like collect(), but splits a List or array source into ranges that are each collected into
+     their own container on the ForkJoinPool.commonPool() (see groupByParallel()).  The combiner
+     adds the second container into the first.  Ranges are combined in source order.
+     */
+    public <R> R collectParallel(Supplier<R> supplier, BiConsumer<R,? super A> accumulator,
+                                 BiConsumer<R,R> combiner) {
+        Function2<R,A,R> reducer = (r, a) -> {
+            accumulator.accept(r, a);
+            return r;
+        };
+        return ParallelFold.fold(this, supplier, reducer, (r1, r2) -> {
+            combiner.accept(r1, r2);
+            return r1;
+        });
+    }
+
+    /**
+     Compiles this transformation once, into a plan that can be run again and again, from many
+     threads at once, without compiling it again each time.
+     */
+    public CompiledPlan<A> compile() { return new CompiledPlan<>(this); }
+
     // =============================================================================================
     // These will come from Transformable, but (will be) overridden to have a different return type.
 
@@ -127,6 +340,67 @@ public abstract class TransDesc<A> implements Transformable<A> {
         return new AppendArrayDesc<>(this, new SourceProviderArrayDesc<>(list));
     }
 
+    /**
+     Removes duplicate items (as defined by equals() and hashCode()), keeping the first of each.
+     Longs and Integers are remembered in arrays of primitives instead of as references to boxes.
+     */
+    public TransDesc<A> distinct() { return new DistinctDesc<>(this, null); }
+
+    /** Keeps only the first item with each key (as defined by equals() and hashCode()). */
+    public TransDesc<A> distinctBy(Function1<? super A,?> keyFn) {
+        if (keyFn == null) { throw new IllegalArgumentException("Can't have a null keyFn"); }
+        return new DistinctDesc<>(this, keyFn);
+    }
+
+    /** The count, sum, min, max, mean, and variance of the doubles from the function. */
+    public DoubleStats doubleStats(ToDoubleFunction<? super A> f) {
+        return collect(DoubleStats::new, (stats, a) -> stats.accept(f.applyAsDouble(a)));
+    }
+
+    /** Like doubleStats(), but in parallel ranges (see collectParallel()). */
+    public DoubleStats doubleStatsParallel(ToDoubleFunction<? super A> f) {
+        return collectParallel(DoubleStats::new, (stats, a) -> stats.accept(f.applyAsDouble(a)),
+                               DoubleStats::combine);
+    }
+
+    /**
+     One item from this, then one from each of the others in turn, then repeat.  When one runs
+     out, the rest carry on without it.  When all of them are just Lists or arrays, the result is
+     indexed like a list, so drops and takes after it don't have to step through items.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final TransDesc<A> interleave(TransDesc<? extends A>... others) {
+        return new InterleaveDesc<>(this, others);
+    }
+
+    /**
+     An inner join with another transformation: for each pair of items (one from here, one from
+     there) with equal keys, the output has combiner(thisItem, otherItem).  Items with null keys
+     never match.  This is a hash join that builds its table from whichever side is estimated to
+     be smaller and streams the other side, so the output is in the order of the bigger side.
+     */
+    public <B,K,C> TransDesc<C> join(TransDesc<B> other, Function1<? super A,K> leftKey,
+                                     Function1<? super B,K> rightKey,
+                                     Function2<? super A,? super B,? extends C> combiner) {
+        return new JoinDesc<>(this, other, leftKey, rightKey, null, combiner);
+    }
+
+    /**
+     Like join(), but for inputs that are both already sorted by key with the given comparator.
+     This does a merge join instead, which needs no hash table and keeps the output sorted by key.
+     If the inputs are not really sorted, matches will be missed.
+     */
+    public <B,K,C> TransDesc<C> join(TransDesc<B> other, Function1<? super A,K> leftKey,
+                                     Function1<? super B,K> rightKey,
+                                     Comparator<? super K> keyComparator,
+                                     Function2<? super A,? super B,? extends C> combiner) {
+        if (keyComparator == null) {
+            throw new IllegalArgumentException("Can't merge join without a key comparator");
+        }
+        return new JoinDesc<>(this, other, leftKey, rightKey, keyComparator, combiner);
+    }
+
     /** The number of items to drop from the beginning of the output. */
     @Override public TransDesc<A> drop(long n) { return new DropDesc<>(this, n); }
 
@@ -137,18 +411,8 @@ public abstract class TransDesc<A> implements Transformable<A> {
 
         // Construct an optimized array of OpRuns (mutable operations for this run)
         RunList runList = toRunList();
-        // Go back to the first runlist:
-        while (runList.prev != null) { runList = runList.prev; }
 //            System.out.println("this: " + this + " runList: " + runList);
-
-        // Process the runlists in order.
-        B ret = ident;
-        while (runList != null) {
-            // Actually do the fold.
-            ret = _foldLeft(runList, runList.opArray(), 0, ret, reducer);
-            runList = runList.next;
-        }
-        return ret;
+        return foldRunList(runList, ident, reducer);
     }
 
     // TODO: Test.
@@ -161,6 +425,32 @@ public abstract class TransDesc<A> implements Transformable<A> {
         return takeWhile((Function1<? super A,Boolean>) function1).foldLeft(ident, function2);
     }
 
+    /**
+     Like foldLeft(), but saves the number of source items used so far and the accumulator to the
+     checkpoint file after every chunk of that many source items.  If the file exists when this is
+     called, the fold resumes from it, unless it was saved by a different transformation or from
+     sources of a different size: then this throws an IllegalStateException instead of giving a
+     wrong answer.  The file is deleted when the fold finishes.  Every op has to be one a parallel
+     fold could split (so no distinct, scan, window, or a drop or take that couldn't be pushed
+     into the source): otherwise this throws an IllegalStateException.
+     */
+    public <B> B foldLeftCheckpointed(B ident, Function2<B,? super A,B> reducer, Path checkpoint,
+                                      long every, SpillSerializer<B> serializer) {
+        return CheckpointedFold.fold(this, ident, reducer, checkpoint, every, serializer);
+    }
+
+    /**
+     Like foldLeftCheckpointed(), but each chunk is folded in parallel (see groupByParallel()),
+     with a new accumulator per range, and the results are combined with the accumulator so far.
+     */
+    public <B> B foldLeftCheckpointedParallel(Supplier<B> newAccum,
+                                              Function2<B,? super A,B> reducer,
+                                              Function2<B,B,B> combiner, Path checkpoint,
+                                              long every, SpillSerializer<B> serializer) {
+        return CheckpointedFold.foldParallel(this, newAccum, reducer, combiner, checkpoint,
+                                             every, serializer);
+    }
+
     /** We will probably allow this some day, but for now, it's deprecated to avoid confusion. */
     @Override
     @Deprecated
@@ -172,16 +462,97 @@ public abstract class TransDesc<A> implements Transformable<A> {
     // TODO: This conflicts with Iterable.forEach() which returns void.  Rename to forAll() or remove.
     @Override
     public TransDesc<A> forEach(Function1<? super A, ?> f) {
-        return filter(a -> {
-            f.apply(a);
-            return Boolean.TRUE;
-        });
+        return new ForEachDesc<>(this, f);
+    }
+
+    /**
+     Hands the items to the consumer in batches of n (the last one may be smaller), for sinks like
+     bulk writes that are much cheaper per item in batches.  The batch is a read-only List view of
+     an array that is reused for every batch, so copy anything you need to keep after the
+     consumer returns.
+     */
+    public void forEachBatch(int n, Consumer<? super List<A>> consumer) {
+        if (n < 1) { throw new IllegalArgumentException("Batch size must be at least 1"); }
+        foldLeft(new Batcher<A>(n, consumer), Batcher::add).flush();
+    }
+
+    /**
+     Like forEachBatch(), but when the source is a List or array, ranges of it are processed on the
+     ForkJoinPool.commonPool() (see groupByParallel()), each with its own buffer.  The consumer
+     must be thread-safe, batches arrive in no particular order, and the last batch of each range
+     may be smaller than n.
+     */
+    public void forEachBatchParallel(int n, Consumer<? super List<A>> consumer) {
+        if (n < 1) { throw new IllegalArgumentException("Batch size must be at least 1"); }
+        ParallelFold.fold(this, () -> new Batcher<A>(n, consumer), Batcher::add,
+                          (b1, b2) -> {
+                              b2.flush();
+                              return b1.flush();
+                          }).flush();
+    }
+
+    /**
+     Groups the items by key, folding each group into a single value as it goes (starting from
+     ident) instead of building a list of items per key.  The result is a read-only Map.
+     */
+    public <K,B> Map<K,B> groupBy(Function1<? super A,K> keyFn, B ident,
+                                  Function2<B,? super A,B> reducer) {
+        return foldLeft(new OpenHashMap<K,B>(-1),
+                        (map, a) -> map.aggregate(keyFn.apply(a), ident, reducer, a));
+    }
+
+    /**
+     Like groupBy(), but when the source is a List or array, splits it into ranges that are
+     grouped on the ForkJoinPool.commonPool(), each into its own map.  Those maps are then merged,
+     using the combiner on values from different ranges that have the same key.  The functions
+     must be safe to call from multiple threads at once.  When the transformation can't be split
+     (other sources, or ops like drop, take, or distinct that have to see every item in order),
+     this is the same as groupBy().
+     */
+    public <K,B> Map<K,B> groupByParallel(Function1<? super A,K> keyFn, B ident,
+                                          Function2<B,? super A,B> reducer,
+                                          Function2<B,B,B> combiner) {
+        return ParallelFold.fold(this,
+                                 () -> new OpenHashMap<K,B>(-1),
+                                 (map, a) -> map.aggregate(keyFn.apply(a), ident, reducer, a),
+                                 (m1, m2) -> m1.merge(m2, combiner));
     }
 
+    /**
+     Keeps only the items for which the function returns true.  Filters should not have side
+     effects (use forEach() for that), since optimizeFilters() may change the order they run in
+     and call them on sample items.
+     */
     @Override public TransDesc<A> filter(Function1<? super A,Boolean> f) {
         return new FilterDesc<>(this, f);
     }
 
+    /**
+     A filter with a declared cost (time per call, in any unit, as long as all filters use the
+     same one) and selectivity (the fraction of items that get through, from 0.0 to 1.0).  A filter
+     with hints that comes right after other filters with hints goes ahead of them if it is
+     cheaper per item thrown away, so the expensive filters see fewer items.  Declaring hints
+     declares the filter independent (see filterIndependent()), so don't use them on a filter that
+     depends on an earlier one, like s.length() > 3 after s != null.
+     */
+    public TransDesc<A> filter(Function1<? super A,Boolean> f, double cost, double selectivity) {
+        if (cost < 0) { throw new IllegalArgumentException("Cost can't be negative"); }
+        if ( (selectivity < 0) || (selectivity > 1) ) {
+            throw new IllegalArgumentException("Selectivity must be from 0.0 to 1.0");
+        }
+        return new FilterDesc<>(this, f, cost, selectivity);
+    }
+
+    /**
+     A filter that is safe to call on any item, not just the ones that the filters before it let
+     through, so optimizeFilters() may time it on sample items and move it ahead of or behind the
+     other independent filters next to it.  A filter that isn't declared independent is never
+     moved or measured, and no filter moves ahead of it.
+     */
+    public TransDesc<A> filterIndependent(Function1<? super A,Boolean> f) {
+        return new FilterDesc<>(this, f, -1, -1, true);
+    }
+
     public <B> TransDesc<B> flatMap(Function1<? super A,Iterable<B>> f) {
         return new FlatMapDesc<>(this, f);
     }
@@ -190,8 +561,168 @@ public abstract class TransDesc<A> implements Transformable<A> {
         return new MapDesc<>(this, f);
     }
 
+    /** The count, sum, min, max, mean, and variance of the longs from the function. */
+    public LongStats longStats(ToLongFunction<? super A> f) {
+        return collect(LongStats::new, (stats, a) -> stats.accept(f.applyAsLong(a)));
+    }
+
+    /** Like longStats(), but in parallel ranges (see collectParallel()). */
+    public LongStats longStatsParallel(ToLongFunction<? super A> f) {
+        return collectParallel(LongStats::new, (stats, a) -> stats.accept(f.applyAsLong(a)),
+                               LongStats::combine);
+    }
+
+    /**
+     Maps each item to a long, then the long to the result, without boxing the long in between:
+     the two are run as one map op.
+     */
+    public <B> TransDesc<B> mapViaLong(ToLongFunction<? super A> toLong,
+                                       LongToObj<? extends B> fromLong) {
+        return new MapDesc<>(this, a -> fromLong.apply(toLong.applyAsLong(a)));
+    }
+
+    /**
+     The average of the last size numbers from the function, once there are that many.  Each
+     average is computed from the last one in constant time.
+     */
+    public TransDesc<Double> movingAverage(int size, ToDoubleFunction<? super A> f) {
+        checkWindow(size, 1);
+        return new MovingDesc<>(this, MovingDesc.Kind.AVERAGE, size, f);
+    }
+
+    /** The biggest of the last size items, once there are that many.  O(1) per item on average. */
+    public TransDesc<A> movingMax(int size, Comparator<? super A> comparator) {
+        checkWindow(size, 1);
+        return new MovingDesc<>(this, MovingDesc.Kind.MAX, size, comparator);
+    }
+
+    /** The smallest of the last size items, once there are that many.  O(1) per item on average. */
+    public TransDesc<A> movingMin(int size, Comparator<? super A> comparator) {
+        checkWindow(size, 1);
+        return new MovingDesc<>(this, MovingDesc.Kind.MIN, size, comparator);
+    }
+
+    /**
+     The sum of the last size numbers from the function, once there are that many.  Each sum is
+     computed from the last one in constant time.
+     */
+    public TransDesc<Long> movingSum(int size, ToLongFunction<? super A> f) {
+        checkWindow(size, 1);
+        return new MovingDesc<>(this, MovingDesc.Kind.SUM, size, f);
+    }
+
+    /**
+     A uniform random sample of n items (or all of them, if there are fewer), in the order they
+     came in.  The same seed gives the same sample.  Straight from a List or array, only the
+     sampled items are read.  Otherwise, every item is looked at once, but only n are kept.
+     */
+    public TransDesc<A> sample(int n, long seed) {
+        if (n < 0) { throw new IllegalArgumentException("Can't sample less than zero items"); }
+        return new SampleDesc<>(this, n, seed);
+    }
+
+    /**
+     Drops items whose keys (from keyFn) are definitely not among the given keys, using a compact
+     Bloom filter built once from the keys.  About 1-2% of items with other keys still get
+     through, so this is a pre-filter, not an exact one.  Put it before expensive maps on the
+     probe side of a join (or before anything else that will only keep matching items) so those
+     maps don't run on items that would be thrown away anyway.  The join itself does this on its
+     own for big build sides, but can only check items after all their maps have run.
+     */
+    public TransDesc<A> semiJoinFilter(Iterable<?> keys, Function1<? super A,?> keyFn) {
+        return new SemiJoinDesc<>(this, keys, keyFn);
+    }
+
+    /**
+     Reorders the runs of consecutive independent filters (see filterIndependent()) before this
+     point so that the cheapest filters that throw the most away go first.  Any other op,
+     including a filter that isn't independent, ends a run.  Independent filters without declared
+     hints are timed on a few hundred evenly spaced items when they come first after a big List or
+     array source.  A run with any filter whose cost can't be known, or that throws while being
+     timed, stays in the order written.
+     */
+    public TransDesc<A> optimizeFilters() { return new PlanFiltersDesc<>(this); }
+
+    /**
+     Like foldLeft(), but lazily outputs the accumulator after each item (but not ident itself),
+     so there is one output for each input.
+     */
+    public <B> TransDesc<B> scan(B ident, Function2<B,? super A,B> f) {
+        return new ScanDesc<>(this, ident, f, null);
+    }
+
+    /**
+     Like scan(), but when the source is a List or array, does a two-pass parallel prefix scan on
+     the ForkJoinPool.commonPool(), gathering the output into an array.  The combiner puts
+     together the accumulators of consecutive ranges, so it must be associative with ident as its
+     identity, and f(combiner(a, b), x) must equal combiner(a, f(b, x)) (true for sums, products,
+     min, max...).  The functions must be safe to call from multiple threads at once.  When the
+     transformation can't be split (see groupByParallel()), this is the same as scan().
+     */
+    public <B> TransDesc<B> scanParallel(B ident, Function2<B,? super A,B> f,
+                                         Function2<B,B,B> combiner) {
+        if (combiner == null) { throw new IllegalArgumentException("Can't have a null combiner"); }
+        return new ScanDesc<>(this, ident, f, combiner);
+    }
+
+    /**
+     Sorts the items with the given comparator.  The sort is stable, so equal items stay in the
+     order they came in.  A following take(k) (or drop(d).take(k)) is noticed and only the first k
+     (or d + k) items are kept in a bounded heap instead of sorting everything.
+     */
+    public TransDesc<A> sorted(Comparator<? super A> comparator) {
+        return new SortedDesc<>(this, comparator, false);
+    }
+
+    /**
+     Like sorted(), but holds at most maxInMemory items on the heap.  Whenever that many have been
+     gathered, they are sorted and written to a temporary file with the serializer.  At the end,
+     the files are merged back together in a single pass, streaming the sorted items into the
+     rest of the transformation.  Temporary files are deleted as they are used up.
+     */
+    public TransDesc<A> sorted(Comparator<? super A> comparator, SpillSerializer<A> serializer,
+                               int maxInMemory) {
+        return new SpillSortDesc<>(this, comparator, serializer, maxInMemory);
+    }
+
+    /**
+     Like sorted(), but when the source is a List or array, gathers the items in parallel ranges
+     (see groupByParallel()) and sorts them with Arrays.parallelSort().  For a following take(k),
+     each range keeps its own top k, and those are merged.
+     */
+    public TransDesc<A> sortedParallel(Comparator<? super A> comparator) {
+        return new SortedDesc<>(this, comparator, true);
+    }
+
     abstract RunList toRunList();
 
+    /**
+     Like toRunList(), but with a promise that no more than limit items of the output will be
+     used.  Descriptions that can do less work knowing that (like sorted) override this.
+     */
+    RunList toRunList(long limit) { return toRunList(); }
+
+    /**
+     Adds the parts that identify this description (and everything before it) to the given list.
+     Descriptions with the same parts (numbers and classes compared with equals(), everything else
+     by identity) produce the same output from the same sources.  The default is just this object,
+     which is always safe, but never matches any other description.
+     */
+    @SuppressWarnings("unchecked")
+    void fingerprint(List<Object> parts) {
+        if (prevOp != null) { prevOp.fingerprint(parts); }
+        parts.add(this);
+    }
+
+    /** The sum of the longs from the function, accumulated in a primitive long. */
+    public long sumLong(ToLongFunction<? super A> f) {
+        Function2<long[],A,long[]> add = (sum, a) -> {
+            sum[0] = sum[0] + f.applyAsLong(a);
+            return sum;
+        };
+        return foldRunList(toRunList(), new long[1], add)[0];
+    }
+
     // TODO: Test.
     @Override
     public TransDesc<A> take(long l) { return new TakeDesc<>(this, l); }
@@ -199,8 +730,42 @@ public abstract class TransDesc<A> implements Transformable<A> {
     // TODO: Test.
     @Override
     public TransDesc<A> takeWhile(Function1<? super A,Boolean> function1) {
-        // I'm coding this as a map operation that either returns the source, or a TERMINATE
-        // sentinel value.
-        return new MapDesc<>(this, a -> function1.apply(a) ? a : terminate());
+        return new TakeWhileDesc<>(this, function1);
+    }
+
+    /** Non-overlapping windows of size items.  Same as window(size, size). */
+    public TransDesc<List<A>> tumble(int size) { return window(size, size); }
+
+    /**
+     Like filter(), but with a predicate that returns a primitive boolean, so the op loop calls it
+     directly instead of through an adapter that unboxes a Boolean.
+     */
+    public TransDesc<A> where(ObjPredicate<? super A> p) { return new FilterDesc<>(this, p); }
+
+    /**
+     Windows of size items, starting a new window every step items.  Each window is a read-only
+     view that is reused for the next window, so copy it if you need to keep it.  A trailing
+     window with less than size items is not produced.
+     */
+    public TransDesc<List<A>> window(int size, int step) {
+        checkWindow(size, step);
+        return new WindowDesc<>(this, size, step);
+    }
+
+    private static void checkWindow(int size, int step) {
+        if ( (size < 1) || (step < 1) ) {
+            throw new IllegalArgumentException("Window size and step must be at least 1");
+        }
+    }
+
+    /**
+     Pairs each item with the item at the same position in the other transformation, using the
+     function, stopping at the end of the shorter one.  When both are just Lists or arrays, this
+     is a single index loop over both, and drops and takes after it are index arithmetic shared by
+     both sides.  Otherwise, both sides are stepped through together.
+     */
+    public <B,C> TransDesc<C> zip(TransDesc<B> other,
+                                  Function2<? super A,? super B,? extends C> f) {
+        return new ZipDesc<>(this, other, f);
     }
 }
@@ -0,0 +1,149 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ Describes sliding windows of size items, starting a new window every step items (so step ==
+ size gives tumbling windows).  A window is a read-only List view that is reused for every
+ window, so making a window allocates nothing.  The catch is that a window is only valid until
+ the next one is produced.
+
+ When the windows come straight from a List or array source, the view just points at a range of
+ that source: no copying at all, and drops and takes are index arithmetic on window numbers.
+ Otherwise, the items go through a ring buffer of size items (see OpRun.WindowRun).  Either way,
+ a trailing window with less than size items is never produced.
+ @param <T> the type of the items in the windows.
+ */
+class WindowDesc<T> extends TransDesc<List<T>> {
+    final int size;
+    final int step;
+
+    WindowDesc(TransDesc<T> prev, int sz, int stp) { super(prev); size = sz; step = stp; }
+
+    @Override RunList toRunList() { return addWindow(prevOp.toRunList()); }
+
+    /** Only the items for the first limit windows are needed. */
+    @Override RunList toRunList(long limit) {
+        // Too many to count means "all of them"
+        long prevLimit = (limit < 1) ? 0 :
+                         (limit - 1 > (Long.MAX_VALUE - size) / step) ? Long.MAX_VALUE :
+                         (limit - 1) * step + size;
+        return addWindow(prevOp.toRunList(prevLimit));
+    }
+
+    @SuppressWarnings("unchecked")
+    private RunList addWindow(RunList ret) {
+        if ( (ret.prev == null) && ret.list.isEmpty() &&
+             (ret.source instanceof MutableSource.MutableListSource) ) {
+            ret.source = new WindowListSource<>((MutableSource.MutableListSource<T>) ret.source,
+                                                size, step);
+            return ret;
+        }
+        ret.addToAll(new OpRun.WindowRun(size, step));
+        return ret;
+    }
+
+    /**
+     Windows over a range of a List or array source.  This is not a MutableListSource itself, so
+     nothing tries to split it into ranges of windows.
+     */
+    private static final class WindowListSource<T> extends OpRun
+            implements MutableSource<List<T>> {
+        private final List<T> items;
+        // Used instead of items for an array source.
+        private final T[] itemArray;
+        private final int size;
+        private final int step;
+        // The start of the next window, and the end of the last item.
+        private int idx;
+        private int end;
+        private final Slice slice = new Slice();
+
+        WindowListSource(MutableSource.MutableListSource<T> src, int sz, int stp) {
+            if (src instanceof MutableSource.MutableArraySource) {
+                items = null;
+                itemArray = ((MutableSource.MutableArraySource<T>) src).itemArray;
+            } else {
+                items = src.items;
+                itemArray = null;
+            }
+            idx = src.idx; end = src.size; size = sz; step = stp;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean hasNext() { return end - idx >= size; }
+
+        /** {@inheritDoc} */
+        @Override public List<T> next() {
+            if (end - idx < size) { throw new NoSuchElementException("No more windows"); }
+            slice.from = idx;
+            idx = idx + step;
+            return slice;
+        }
+
+        /** Dropping windows moves the start ahead a step per window. */
+        @Override public TransDesc.OpStrategy drop(long d) {
+            if (d < 0) {
+                throw new IllegalArgumentException("Makes no sense to drop less than 0 items");
+            }
+            long newIdx = (d > Integer.MAX_VALUE) ? end : idx + d * step;
+            idx = (newIdx > end) ? end : (int) newIdx;
+            return TransDesc.OpStrategy.HANDLE_INTERNALLY;
+        }
+
+        /** Taking windows moves the end to the end of the last window taken. */
+        @Override public TransDesc.OpStrategy take(long t) {
+            if (t < 0) {
+                throw new IllegalArgumentException("Makes no sense to take less than 0 items");
+            }
+            if (t < 1) {
+                end = idx;
+            } else if (t <= Integer.MAX_VALUE) {
+                long newEnd = idx + (t - 1) * step + size;
+                if (newEnd < end) { end = (int) newEnd; }
+            }
+            return TransDesc.OpStrategy.HANDLE_INTERNALLY;
+        }
+
+        /** {@inheritDoc} */
+        @Override public long sizeEstimate() {
+            return (end - idx < size) ? 0 : (end - idx - size) / step + 1;
+        }
+
+        private final class Slice extends AbstractList<T> implements RandomAccess {
+            private int from;
+
+            @Override public T get(int i) {
+                if ( (i < 0) || (i >= size) ) {
+                    throw new IndexOutOfBoundsException("Index: " + i + " size: " + size);
+                }
+                return (itemArray == null) ? items.get(from + i) : itemArray[from + i];
+            }
+            @Override public int size() { return size; }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(WindowDesc.class);
+        parts.add(size);
+        parts.add(step);
+    }
+}
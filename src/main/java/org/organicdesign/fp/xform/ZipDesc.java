@@ -0,0 +1,111 @@
+// Copyright (c) 2026-10-19 PlanBase Inc. & Glen Peterson
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.organicdesign.fp.xform;
+
+import org.organicdesign.fp.function.Function2;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ Describes pairing up the items of two transformations in order with a function, stopping at the
+ end of the shorter one.
+
+ When both sides compile to a bare List or array source (no ops), the output is a lazy
+ random-access view that calls the function on the items at the same index of each.  That view
+ becomes an ordinary list source, so a later drop or take is index arithmetic shared by both
+ sides, the whole thing runs as a single index loop, and it can be split for parallel folds.
+ Otherwise, both sides are pulled through RunListIterators side by side.  That stops at the end
+ of the shorter side (or sooner, with a take), so the fold closes both sides when it's done.
+ @param <A> the type of the items on the left.
+ @param <B> the type of the items on the right.
+ @param <C> the type of the output.
+ */
+class ZipDesc<A,B,C> extends TransDesc<C> {
+    final TransDesc<B> other;
+    final Function2<? super A,? super B,? extends C> f;
+
+    ZipDesc(TransDesc<A> prev, TransDesc<B> o, Function2<? super A,? super B,? extends C> func) {
+        super(prev); other = o; f = func;
+    }
+
+    @Override RunList toRunList() { return toRunList(Long.MAX_VALUE); }
+
+    /** Zip produces no more items than either side, so it can pass the limit along to both. */
+    @SuppressWarnings("unchecked")
+    @Override RunList toRunList(long limit) {
+        RunList left = prevOp.toRunList(limit);
+        RunList right = other.toRunList(limit);
+        Function2<Object,Object,Object> func = (Function2<Object,Object,Object>) f;
+        List<Object> leftItems = indexed(left);
+        List<Object> rightItems = indexed(right);
+        if ( (leftItems != null) && (rightItems != null) ) {
+            return RunList.of(null, new MutableSource.MutableListSource<>(
+                    new Zipped(leftItems, rightItems, func), 0));
+        }
+        Iterable<Object> zipped = () -> new Iterator<Object>() {
+            private final Iterator<Object> ls = new RunListIterator(left);
+            private final Iterator<Object> rs = new RunListIterator(right);
+            @Override public boolean hasNext() { return ls.hasNext() && rs.hasNext(); }
+            @Override public Object next() { return func.apply(ls.next(), rs.next()); }
+        };
+        RunList ret = RunList.of(null, new MutableSource.MutableIterableSource<>(zipped));
+        ret.resource = RunList.closing(left, right);
+        return ret;
+    }
+
+    /**
+     The remaining items of the runlist's source as a random-access List, or null if the runlist
+     has ops or other sources (so it isn't just indexing into a list).
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object> indexed(RunList rl) {
+        if ( (rl.prev != null) || (rl.next != null) || !rl.list.isEmpty() ||
+             !(rl.source instanceof MutableSource.MutableListSource) ) {
+            return null;
+        }
+        MutableSource.MutableListSource<Object> src =
+                (MutableSource.MutableListSource<Object>) rl.source;
+        List<Object> all = src.items;
+        if (src instanceof MutableSource.MutableArraySource) {
+            all = Arrays.asList(((MutableSource.MutableArraySource<Object>) src).itemArray);
+        }
+        return all.subList(src.idx, src.size);
+    }
+
+    private static final class Zipped extends AbstractList<Object> implements RandomAccess {
+        private final List<Object> left;
+        private final List<Object> right;
+        private final Function2<Object,Object,Object> func;
+        private final int size;
+
+        Zipped(List<Object> l, List<Object> r, Function2<Object,Object,Object> fn) {
+            left = l; right = r; func = fn; size = Math.min(l.size(), r.size());
+        }
+
+        @Override public Object get(int i) { return func.apply(left.get(i), right.get(i)); }
+        @Override public int size() { return size; }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void fingerprint(List<Object> parts) {
+        prevOp.fingerprint(parts);
+        parts.add(ZipDesc.class);
+        other.fingerprint(parts);
+        parts.add(f);
+    }
+}
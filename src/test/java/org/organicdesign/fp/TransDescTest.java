@@ -5,12 +5,35 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.organicdesign.fp.collections.PersistentVector;
+import org.organicdesign.fp.function.Function1;
+import org.organicdesign.fp.function.Function2;
+import org.organicdesign.fp.xform.CancelToken;
+import org.organicdesign.fp.xform.Columns;
+import org.organicdesign.fp.xform.CompiledPlan;
+import org.organicdesign.fp.xform.DoubleStats;
+import org.organicdesign.fp.xform.EncodedStrings;
+import org.organicdesign.fp.xform.FoldCancelledException;
+import org.organicdesign.fp.xform.LongStats;
+import org.organicdesign.fp.xform.PrefixCache;
+import org.organicdesign.fp.xform.ResultCache;
+import org.organicdesign.fp.xform.SpillSerializer;
+import org.organicdesign.fp.xform.StringDictionary;
 import org.organicdesign.fp.xform.TransDesc;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.organicdesign.fp.StaticImports.imSortedSet;
 
@@ -237,4 +260,1262 @@ public class TransDescTest extends TestCase {
         longerCombinations(TransDesc.fromArray(src));
     }
 
-}
\ No newline at end of file
+    @Test public void cachedPrefix() {
+        PrefixCache pool = PrefixCache.of(100);
+        final int[] numMapped = new int[] { 0 };
+        TransDesc<Integer> prefix = TransDesc.from(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9))
+                                             .filter(i -> i % 2 == 1)
+                                             .map(i -> {
+                                                 numMapped[0]++;
+                                                 return i * 10;
+                                             })
+                                             .cache(pool);
+        assertEquals(Arrays.asList(10, 30, 50, 70, 90),
+                     prefix.foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                         accum.add(i);
+                         return accum;
+                     }));
+        assertEquals(5, numMapped[0]);
+        assertEquals(Arrays.asList(30, 50),
+                     prefix.drop(1)
+                           .take(2)
+                           .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                               accum.add(i);
+                               return accum;
+                           }));
+        assertEquals(Integer.valueOf(2),
+                     prefix.filter(i -> i > 50)
+                           .foldLeft(0, (count, i) -> count + 1));
+        assertEquals(5, numMapped[0]);
+        assertEquals(1, pool.misses());
+        assertEquals(2, pool.hits());
+        assertEquals(5, pool.usedItems());
+
+        // Caching a second, bigger prefix evicts the least recently used one.
+        PrefixCache small = PrefixCache.of(6);
+        TransDesc<Integer> a = TransDesc.from(Arrays.asList(1, 2, 3, 4)).cache(small);
+        TransDesc<Integer> b = TransDesc.from(Arrays.asList(5, 6, 7)).cache(small);
+        assertEquals(Integer.valueOf(10), a.foldLeft(0, (sum, i) -> sum + i));
+        assertEquals(Integer.valueOf(18), b.foldLeft(0, (sum, i) -> sum + i));
+        assertEquals(1, small.evictions());
+        assertEquals(3, small.usedItems());
+        assertEquals(Integer.valueOf(10), a.foldLeft(0, (sum, i) -> sum + i));
+        assertEquals(0, small.hits());
+        assertEquals(3, small.misses());
+
+        // Empty prefixes still hold on to their sources, so they count and get evicted too.
+        PrefixCache empties = PrefixCache.of(2);
+        for (int i = 0; i < 3; i++) {
+            TransDesc.from(Arrays.asList(1, 2, 3)).filter(n -> false).cache(empties)
+                     .foldLeft(0, (sum, n) -> sum + n);
+        }
+        assertEquals(2, empties.usedItems());
+        assertEquals(1, empties.evictions());
+
+        // So do too many prefixes, however small.
+        PrefixCache few = PrefixCache.of(100, 2);
+        for (int i = 0; i < 3; i++) {
+            TransDesc.from(Arrays.asList(i)).cache(few).foldLeft(0, (sum, n) -> sum + n);
+        }
+        assertEquals(2, few.usedItems());
+        assertEquals(1, few.evictions());
+        assertEquals(2, few.maxEntries());
+    }
+
+    @Test public void cachedResults() {
+        ResultCache cache = ResultCache.of(2);
+        List<Integer> src = Collections.unmodifiableList(Arrays.asList(1, 2, 3, 4, 5));
+        Function2<Integer,Integer,Integer> sum = (accum, i) -> accum + i;
+        TransDesc<Integer> td = TransDesc.from(src).drop(1);
+
+        assertEquals(Integer.valueOf(14), cache.foldLeft(td, 0, sum));
+        // A new description with the same structure, functions, and source is a hit.
+        assertEquals(Integer.valueOf(14), cache.foldLeft(TransDesc.from(src).drop(1), 0, sum));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // Different drop, different identity, different version, different source: all misses.
+        assertEquals(Integer.valueOf(12), cache.foldLeft(TransDesc.from(src).drop(2), 0, sum));
+        assertEquals(Integer.valueOf(15), cache.foldLeft(td, 0, 1, sum));
+        assertEquals(Integer.valueOf(14),
+                     cache.foldLeft(TransDesc.from(new ArrayList<>(src)).drop(1), 0, sum));
+        assertEquals(4, cache.misses());
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.evictions());
+        assertEquals(0.2, cache.hitRate(), 0.0001);
+
+        ResultCache expiring = ResultCache.of(10, 1, java.util.concurrent.TimeUnit.NANOSECONDS);
+        expiring.foldLeft(td, 0, sum);
+        expiring.foldLeft(td, 0, sum);
+        assertEquals(0, expiring.hits());
+        assertEquals(1, expiring.expirations());
+    }
+
+    @Test public void distinct() {
+        List<Integer> src = Arrays.asList(3, 1, 3, 2, 1, 4, 0, 0, 5, 4);
+        assertEquals(Arrays.asList(3, 1, 2, 4, 0, 5),
+                     TransDesc.from(src)
+                              .distinct()
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        // A drop after distinct must count distinct items, not source items.
+        assertEquals(Arrays.asList(2, 4),
+                     TransDesc.from(src)
+                              .distinct()
+                              .drop(2)
+                              .take(2)
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        // But a drop before it can still be pushed to the source.
+        assertEquals(Arrays.asList(3, 2, 1, 4, 0, 5),
+                     TransDesc.from(src)
+                              .drop(2)
+                              .distinct()
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList(3, 1, 2, 4, 0, 5, 7),
+                     TransDesc.from(src)
+                              .concatList(Arrays.asList(5, 7, 3))
+                              .distinct()
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList("a", "bb", "ccc"),
+                     TransDesc.from(Arrays.asList("a", "bb", "b", "ccc", "dd", null, "e"))
+                              .filter(s -> s != null)
+                              .distinctBy(String::length)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+        // Lots of Longs, plus an Integer that's equal in value (but not equal()).
+        List<Object> longs = new ArrayList<>();
+        for (long l = -5000; l < 5000; l++) {
+            longs.add(l);
+            longs.add(l / 2);
+        }
+        longs.add(7);
+        assertEquals(Integer.valueOf(10001),
+                     TransDesc.from(longs).distinct().foldLeft(0, (count, o) -> count + 1));
+    }
+
+    @Test public void groupBy() {
+        Map<Integer,Integer> sums = TransDesc.from(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9))
+                                             .groupBy(i -> i % 3, 0, (sum, i) -> sum + i);
+        assertEquals(3, sums.size());
+        assertEquals(Integer.valueOf(18), sums.get(0));
+        assertEquals(Integer.valueOf(12), sums.get(1));
+        assertEquals(Integer.valueOf(15), sums.get(2));
+        assertNull(sums.get(3));
+
+        Map<String,Integer> counts = TransDesc.from(Arrays.asList("a", null, "bb", "cc", null))
+                                              .groupBy(s -> (s == null) ? null : "" + s.length(),
+                                                       0, (count, s) -> count + 1);
+        assertEquals(Integer.valueOf(2), counts.get(null));
+        assertEquals(Integer.valueOf(1), counts.get("1"));
+        assertEquals(Integer.valueOf(2), counts.get("2"));
+
+        List<Long> big = new ArrayList<>();
+        for (long l = 0; l < 200000; l++) { big.add(l); }
+        Map<Long,Long> serial = TransDesc.from(big)
+                                         .drop(7)
+                                         .filter(l -> l % 5 != 0)
+                                         .groupBy(l -> l % 1000, 0L, (sum, l) -> sum + l);
+        Map<Long,Long> parallel = TransDesc.from(big)
+                                           .drop(7)
+                                           .filter(l -> l % 5 != 0)
+                                           .groupByParallel(l -> l % 1000, 0L,
+                                                            (sum, l) -> sum + l,
+                                                            (s1, s2) -> s1 + s2);
+        assertEquals(800, serial.size());
+        assertEquals(serial, parallel);
+
+        // Can't be split, so this is done serially, but still gives the right answer.
+        assertEquals(Integer.valueOf(3),
+                     TransDesc.from(big)
+                              .distinct()
+                              .takeWhile(l -> l < 3)
+                              .groupByParallel(l -> "all", 0, (count, l) -> count + 1,
+                                               (c1, c2) -> c1 + c2)
+                              .get("all"));
+    }
+
+    @Test public void sorted() {
+        List<Integer> src = Arrays.asList(5, 3, 9, 1, 7, 2, 8, 6, 4);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9),
+                     TransDesc.from(src)
+                              .sorted(Comparator.naturalOrder())
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList(9, 8, 7),
+                     TransDesc.from(src)
+                              .sorted(Comparator.reverseOrder())
+                              .take(3)
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList(30, 40),
+                     TransDesc.from(src)
+                              .sorted(Comparator.naturalOrder())
+                              .drop(2)
+                              .map(i -> i * 10)
+                              .take(2)
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+
+        // Stable: equal items (same length) stay in their original order, top-k or not.
+        List<String> words = Arrays.asList("ccc", "a", "bb", "b", "dd", "c", "aaa");
+        Comparator<String> byLength = Comparator.comparing(String::length);
+        assertEquals(Arrays.asList("a", "b", "c", "bb", "dd", "ccc", "aaa"),
+                     TransDesc.from(words)
+                              .sorted(byLength)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList("a", "b", "c", "bb"),
+                     TransDesc.from(words)
+                              .sorted(byLength)
+                              .take(4)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+
+        List<Long> big = new ArrayList<>();
+        for (long l = 0; l < 100000; l++) { big.add((l * 7919) % 100003); }
+        List<Long> expected = new ArrayList<>(big);
+        Collections.sort(expected);
+        assertEquals(expected.subList(10, 15),
+                     TransDesc.from(big)
+                              .sortedParallel(Comparator.naturalOrder())
+                              .drop(10)
+                              .take(5)
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+        assertEquals(expected,
+                     TransDesc.from(big)
+                              .sortedParallel(Comparator.naturalOrder())
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+        assertEquals(Collections.emptyList(),
+                     TransDesc.from(big)
+                              .sorted(Comparator.naturalOrder())
+                              .take(0)
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+    }
+
+    @Test public void sortedWithSpill() {
+        List<Long> big = new ArrayList<>();
+        for (long l = 0; l < 10000; l++) { big.add((l * 7919) % 10007); }
+        List<Long> expected = new ArrayList<>(big);
+        Collections.sort(expected);
+
+        // 10000 items, 1000 at a time: 9 spilled runs plus one in memory.
+        assertEquals(expected,
+                     TransDesc.from(big)
+                              .sorted(Comparator.naturalOrder(), SpillSerializer.LONG, 1000)
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+        assertEquals(expected.subList(9990, 9995),
+                     TransDesc.from(big)
+                              .sorted(Comparator.naturalOrder(), SpillSerializer.LONG, 999)
+                              .drop(9990)
+                              .take(5)
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+
+        // Stable across runs.
+        List<String> words = Arrays.asList("ccc", "a", "bb", "b", "dd", "c", "aaa", "d", "ee");
+        assertEquals(Arrays.asList("a", "b", "c", "d", "bb", "dd", "ee", "ccc", "aaa"),
+                     TransDesc.from(words)
+                              .sorted(Comparator.comparing(String::length),
+                                      SpillSerializer.STRING, 2)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+
+        // 500 runs is more than are merged at once, so they're merged in passes, stably.
+        Comparator<Long> lastDigit = Comparator.comparing(l -> l % 10);
+        List<Long> byLastDigit = new ArrayList<>(big);
+        byLastDigit.sort(lastDigit);
+        long runFiles = spillRunFiles();
+        assertEquals(byLastDigit,
+                     TransDesc.from(big)
+                              .sorted(lastDigit, SpillSerializer.LONG, 20)
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+        assertEquals(runFiles, spillRunFiles());
+        assertEquals(byLastDigit.subList(0, 3),
+                     TransDesc.from(big)
+                              .sorted(lastDigit, SpillSerializer.LONG, 20)
+                              .take(3)
+                              .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                  accum.add(l);
+                                  return accum;
+                              }));
+        assertEquals(runFiles, spillRunFiles());
+
+        // Run files are closed and deleted when the merge stops early or the fold throws.
+        assertEquals(Long.valueOf(0 + 1 + 2),
+                     TransDesc.from(big)
+                              .sorted(Comparator.naturalOrder(), SpillSerializer.LONG, 1000)
+                              .takeWhile(l -> l < 3)
+                              .foldLeft(0L, (Long s, Long l) -> s + l));
+        assertEquals(runFiles, spillRunFiles());
+        try {
+            TransDesc.from(big)
+                     .sorted(Comparator.naturalOrder(), SpillSerializer.LONG, 1000)
+                     .foldLeft(0L, (Long s, Long l) -> {
+                         if (l == 100) { throw new IllegalStateException("Stop"); }
+                         return s + l;
+                     });
+            fail("Should have thrown");
+        } catch (IllegalStateException stopped) {
+            assertEquals(runFiles, spillRunFiles());
+        }
+    }
+
+    private static long spillRunFiles() {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(p -> p.getFileName().toString().startsWith("TransDescSort"))
+                        .count();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Test public void join() {
+        // Dimension table: id -> name.  Smaller, so it's the build side.
+        List<String> names = Arrays.asList("1:one", "2:two", "3:three", "3:drei", "5:five");
+        List<Integer> events = Arrays.asList(3, 1, 4, 1, 5, 9, 2, 6, null);
+        Function2<Integer,String,String> combine = (i, s) -> i + "=" + s.substring(2);
+
+        assertEquals(Arrays.asList("3=three", "3=drei", "1=one", "1=one", "5=five", "2=two"),
+                     TransDesc.from(events)
+                              .join(TransDesc.from(names), i -> i,
+                                    s -> Integer.valueOf(s.substring(0, 1)), combine)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+
+        // Now the left side is smaller, so it's the build side and the output follows the right.
+        List<Integer> manyEvents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) { manyEvents.addAll(events); }
+        assertEquals(Arrays.asList("three", "drei", "one", "five"),
+                     TransDesc.from(names)
+                              .join(TransDesc.from(manyEvents).distinct().take(4),
+                                    s -> Integer.valueOf(s.substring(0, 1)), i -> i,
+                                    (s, i) -> s.substring(2))
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+
+        // Merge join of sorted inputs.
+        assertEquals(Arrays.asList("1=one", "1=one", "2=two", "3=three", "3=drei", "5=five"),
+                     TransDesc.from(events)
+                              .filter(i -> i != null)
+                              .sorted(Comparator.naturalOrder())
+                              .join(TransDesc.from(names), i -> i,
+                                    s -> Integer.valueOf(s.substring(0, 1)),
+                                    Comparator.naturalOrder(), combine)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+
+        // A null build item with a key is a match like any other, alone or with others.  The
+        // right side is smaller, so it's the build side.
+        List<String> withNull = Arrays.asList(null, "b", "c");
+        assertEquals(Arrays.asList("0=null", "1=b", "1=c"),
+                     TransDesc.from(Arrays.asList(0, 1, 2, 3, 4))
+                              .join(TransDesc.from(withNull), i -> i,
+                                    s -> (s == null) ? 0 : 1, (i, s) -> i + "=" + s)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList("0=null", "0=a"),
+                     TransDesc.from(Arrays.asList(0, 2, 2, 2, 2))
+                              .join(TransDesc.from(Arrays.asList(null, "a", "b", "c")), i -> i,
+                                    s -> ((s == null) || s.equals("a")) ? 0 : 1,
+                                    (i, s) -> i + "=" + s)
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String s) -> {
+                                  accum.add(s);
+                                  return accum;
+                              }));
+    }
+
+    @Test public void window() {
+        List<Integer> nums = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+        Function2<List<List<Integer>>,List<Integer>,List<List<Integer>>> copy = (accum, w) -> {
+            accum.add(new ArrayList<>(w));
+            return accum;
+        };
+
+        // Zero-copy windows over a list, with a drop and take on window numbers.
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(3, 4, 5),
+                                   Arrays.asList(5, 6, 7)),
+                     TransDesc.from(nums).window(3, 2).foldLeft(new ArrayList<>(), copy));
+        assertEquals(Arrays.asList(Arrays.asList(2, 3, 4), Arrays.asList(3, 4, 5)),
+                     TransDesc.from(nums).window(3, 1).drop(1).take(2)
+                              .foldLeft(new ArrayList<>(), copy));
+
+        // Ring-buffer windows after a filter.  The trailing partial window is left off.
+        assertEquals(Arrays.asList(Arrays.asList(2, 3), Arrays.asList(4, 5)),
+                     TransDesc.from(nums).filter(i -> i > 1).tumble(2).take(2)
+                              .foldLeft(new ArrayList<>(), copy));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4),
+                                   Arrays.asList(5, 6)),
+                     TransDesc.from((Iterable<Integer>) nums).tumble(2)
+                              .foldLeft(new ArrayList<>(), copy));
+        // Windows span concatenations.
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(2, 3, 4)),
+                     TransDesc.from(Arrays.asList(1, 2)).concatList(Arrays.asList(3, 4))
+                              .window(3, 1).foldLeft(new ArrayList<>(), copy));
+
+        Function2<List<Object>,Object,List<Object>> gather = (accum, o) -> {
+            accum.add(o);
+            return accum;
+        };
+        assertEquals(Arrays.asList(6L, 9L, 12L, 15L, 18L),
+                     TransDesc.from(nums).movingSum(3, i -> i).foldLeft(new ArrayList<>(), gather));
+        assertEquals(Arrays.asList(1.5, 2.5, 3.5, 4.5, 5.5, 6.5),
+                     TransDesc.from(nums).movingAverage(2, i -> i)
+                              .foldLeft(new ArrayList<>(), gather));
+        List<Integer> bumpy = Arrays.asList(5, 3, 4, 1, 2, 6, 0);
+        assertEquals(Arrays.asList(3, 1, 1, 1, 0),
+                     TransDesc.from(bumpy).movingMin(3, Comparator.naturalOrder())
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(Arrays.asList(5, 4, 4, 6, 6),
+                     TransDesc.from(bumpy).movingMax(3, Comparator.naturalOrder())
+                              .foldLeft(new ArrayList<>(), gather));
+    }
+
+    @Test public void scan() {
+        List<Integer> nums = Arrays.asList(1, 2, 3, 4, 5);
+        Function2<List<Long>,Long,List<Long>> gather = (accum, l) -> {
+            accum.add(l);
+            return accum;
+        };
+        assertEquals(Arrays.asList(1L, 3L, 6L, 10L, 15L),
+                     TransDesc.from(nums).scan(0L, (Long sum, Integer i) -> sum + i)
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(Arrays.asList(1L, 3L, 6L),
+                     TransDesc.from(nums).scan(0L, (Long sum, Integer i) -> sum + i).take(3)
+                              .foldLeft(new ArrayList<>(), gather));
+        // The running total continues across a concatenation.
+        assertEquals(Arrays.asList(1L, 3L, 6L, 10L, 15L, 21L, 28L),
+                     TransDesc.from(nums).concatList(Arrays.asList(6, 7))
+                              .scan(0L, (Long sum, Integer i) -> sum + i)
+                              .foldLeft(new ArrayList<>(), gather));
+
+        // Big enough to be split into ranges.
+        Integer[] big = new Integer[100000];
+        for (int i = 0; i < big.length; i++) { big[i] = i % 7; }
+        List<Long> serial = TransDesc.fromArray(big).filter(i -> i != 3)
+                                     .scan(0L, (Long sum, Integer i) -> sum + i)
+                                     .foldLeft(new ArrayList<>(), gather);
+        List<Long> parallel = TransDesc.fromArray(big).filter(i -> i != 3)
+                                       .scanParallel(0L, (Long sum, Integer i) -> sum + i,
+                                                     Long::sum)
+                                       .foldLeft(new ArrayList<>(), gather);
+        assertEquals(serial, parallel);
+        assertEquals(Long.valueOf(14285 * 18 + 7), parallel.get(parallel.size() - 1));
+    }
+
+    @Test public void sample() {
+        Integer[] nums = new Integer[10000];
+        for (int i = 0; i < nums.length; i++) { nums[i] = i; }
+        Function2<List<Integer>,Integer,List<Integer>> gather = (accum, i) -> {
+            accum.add(i);
+            return accum;
+        };
+
+        // Picked by index from the array, and from a plain Iterable with a reservoir.
+        List<Integer> picked = TransDesc.fromArray(nums).drop(100).sample(50, 42L)
+                                        .foldLeft(new ArrayList<>(), gather);
+        List<Integer> reservoir = TransDesc.from((Iterable<Integer>) Arrays.asList(nums))
+                                           .filter(i -> i >= 100).sample(50, 42L)
+                                           .foldLeft(new ArrayList<>(), gather);
+        for (List<Integer> sample : Arrays.asList(picked, reservoir)) {
+            assertEquals(50, sample.size());
+            for (int i = 1; i < sample.size(); i++) {
+                assertTrue(sample.get(i - 1) < sample.get(i));
+            }
+            assertTrue(sample.get(0) >= 100);
+        }
+        // Same seed, same sample.
+        assertEquals(picked, TransDesc.fromArray(nums).drop(100).sample(50, 42L)
+                                      .foldLeft(new ArrayList<>(), gather));
+
+        // Uniform: over many seeds, each position is picked about equally often, both when picked
+        // by index and from the reservoir.  2 of 4 is 10000 each, give or take about 70.
+        List<Integer> four = Arrays.asList(0, 1, 2, 3);
+        int[] byIndex = new int[4];
+        int[] streamed = new int[4];
+        for (long seed = 0; seed < 20000; seed++) {
+            for (Integer i : TransDesc.from(four).sample(2, seed)
+                                      .foldLeft(new ArrayList<>(), gather)) {
+                byIndex[i]++;
+            }
+            for (Integer i : TransDesc.from((Iterable<Integer>) new LinkedList<>(four))
+                                      .sample(2, seed).foldLeft(new ArrayList<>(), gather)) {
+                streamed[i]++;
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            assertTrue("By index, " + i + " picked " + byIndex[i] + " times",
+                       Math.abs(byIndex[i] - 10000) < 400);
+            assertTrue("Streamed, " + i + " picked " + streamed[i] + " times",
+                       Math.abs(streamed[i] - 10000) < 400);
+        }
+
+        // Asking for more than there are gives them all.
+        assertEquals(Arrays.asList(1, 2, 3),
+                     TransDesc.from(Arrays.asList(1, 2, 3)).sample(5, 1L)
+                              .foldLeft(new ArrayList<>(), gather));
+    }
+
+    @Test public void approxAggregates() {
+        Long[] nums = new Long[200000];
+        for (int i = 0; i < nums.length; i++) { nums[i] = (long) (i % 50000); }
+
+        long distinct = TransDesc.fromArray(nums).approxDistinct();
+        assertTrue("Estimate was " + distinct, Math.abs(distinct - 50000) < 1500);
+        assertEquals(distinct, TransDesc.fromArray(nums).approxDistinctParallel());
+        assertEquals(3, TransDesc.from(Arrays.asList("a", "b", "a", "c")).approxDistinct());
+        // "Aa" and "BB" have the same hashCode(), so all 2^14 strings made of 14 of them do too.
+        List<String> sameHashCode = new ArrayList<>();
+        for (int i = 0; i < (1 << 14); i++) {
+            StringBuilder sB = new StringBuilder();
+            for (int bit = 0; bit < 14; bit++) { sB.append(((i >> bit) & 1) == 0 ? "Aa" : "BB"); }
+            sameHashCode.add(sB.toString());
+        }
+        long strings = TransDesc.from(sameHashCode).approxDistinct();
+        assertTrue("Estimate was " + strings, Math.abs(strings - (1 << 14)) < 500);
+
+        double[] qs = TransDesc.fromArray(nums).approxQuantiles(l -> l, 0.0, 0.5, 0.99, 1.0);
+        assertEquals(0.0, qs[0]);
+        assertEquals(25000.0, qs[1], 1000.0);
+        assertEquals(49500.0, qs[2], 1000.0);
+        assertEquals(49999.0, qs[3]);
+        double[] parallelQs = TransDesc.fromArray(nums).approxQuantilesParallel(l -> l, 0.5, 0.99);
+        assertEquals(25000.0, parallelQs[0], 1000.0);
+        assertEquals(49500.0, parallelQs[1], 1000.0);
+        assertTrue(Double.isNaN(TransDesc.from(Collections.<Long>emptyList())
+                                         .approxQuantiles(l -> l, 0.5)[0]));
+    }
+
+    @Test public void semiJoinFilter() {
+        List<Long> keys = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) { keys.add(i * 100); }
+        Long[] rows = new Long[100000];
+        for (int i = 0; i < rows.length; i++) { rows[i] = (long) i; }
+
+        int[] mapped = new int[] { 0 };
+        List<Long> kept = TransDesc.fromArray(rows).semiJoinFilter(keys, l -> l)
+                                   .map(l -> {
+                                       mapped[0] = mapped[0] + 1;
+                                       return l;
+                                   })
+                                   .filter(l -> l % 100 == 0)
+                                   .foldLeft(new ArrayList<>(), (List<Long> accum, Long l) -> {
+                                       accum.add(l);
+                                       return accum;
+                                   });
+        // No false negatives...
+        assertEquals(keys, kept);
+        // ...and only a few false positives reach the map.
+        assertTrue("Mapped " + mapped[0], mapped[0] < 1000 + 3000);
+
+        // A join big enough to use a Bloom filter in front of its hash table.  The left side has
+        // no size, so the right side is the build side.
+        List<Long> big = new ArrayList<>();
+        for (long i = 0; i < 100000; i++) { big.add(i * 2); }
+        List<Long> probes = Arrays.asList(1L, 3L, 4L, 5L, 7L, 8L, 10L, 11L, 200000L);
+        assertEquals(Long.valueOf(3),
+                     TransDesc.from((Iterable<Long>) probes::iterator)
+                              .join(TransDesc.from(big), l -> l, l -> l, (a, b) -> a)
+                              .foldLeft(0L, (Long count, Long l) -> count + 1));
+    }
+
+    @Test public void zipAndInterleave() {
+        Function2<List<String>,String,List<String>> gather = (accum, str) -> {
+            accum.add(str);
+            return accum;
+        };
+        List<Integer> nums = Arrays.asList(1, 2, 3, 4, 5);
+        String[] letters = new String[] { "a", "b", "c", "d" };
+
+        // Index-aligned: a list and an array, with a shared drop and take.
+        assertEquals(Arrays.asList("2b", "3c"),
+                     TransDesc.from(nums).zip(TransDesc.fromArray(letters), (i, s) -> i + s)
+                              .drop(1).take(2).foldLeft(new ArrayList<>(), gather));
+        // Pulled side by side, with a filter on one side and a concatenation on the other.
+        assertEquals(Arrays.asList("2a", "4b", "6c"),
+                     TransDesc.from(Arrays.asList(1, 2, 3, 4, 5, 6, 7)).filter(i -> i % 2 == 0)
+                              .zip(TransDesc.from(Arrays.asList("a", "b"))
+                                            .concatList(Arrays.asList("c", "d", "e", "f")),
+                                   (i, s) -> i + s)
+                              .foldLeft(new ArrayList<>(), gather));
+
+        // Uneven lengths, indexed.
+        List<String> expected = Arrays.asList("1", "a", "x", "2", "b", "3", "c", "4", "d", "5");
+        assertEquals(expected,
+                     TransDesc.from(Arrays.asList("1", "2", "3", "4", "5"))
+                              .interleave(TransDesc.fromArray(letters),
+                                          TransDesc.from(Arrays.asList("x")))
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(expected.subList(4, 8),
+                     TransDesc.from(Arrays.asList("1", "2", "3", "4", "5"))
+                              .interleave(TransDesc.fromArray(letters),
+                                          TransDesc.from(Arrays.asList("x")))
+                              .drop(4).take(4).foldLeft(new ArrayList<>(), gather));
+        // Uneven lengths, pulled.
+        assertEquals(expected,
+                     TransDesc.from(Arrays.asList("1", "2", "3", "4", "5")).filter(s -> true)
+                              .interleave(TransDesc.fromArray(letters),
+                                          TransDesc.from((Iterable<String>) Arrays.asList("x")))
+                              .foldLeft(new ArrayList<>(), gather));
+
+        // A spilled sort on the longer side is never used up, but its run files still go away.
+        List<Long> big = new ArrayList<>();
+        for (long l = 0; l < 10000; l++) { big.add(9999 - l); }
+        long runFiles = spillRunFiles();
+        assertEquals(Arrays.asList("0a", "1b", "2c", "3d"),
+                     TransDesc.from(big)
+                              .sorted(Comparator.naturalOrder(), SpillSerializer.LONG, 1000)
+                              .zip(TransDesc.fromArray(letters), (l, str) -> l + str)
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(runFiles, spillRunFiles());
+        assertEquals(Arrays.asList("0", "a", "1", "b"),
+                     TransDesc.from(big)
+                              .sorted(Comparator.naturalOrder(), SpillSerializer.LONG, 1000)
+                              .map(String::valueOf)
+                              .interleave(TransDesc.fromArray(letters))
+                              .take(4)
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(runFiles, spillRunFiles());
+    }
+
+    @Test public void forEachBatch() {
+        List<List<Integer>> batches = new ArrayList<>();
+        TransDesc.from(Arrays.asList(1, 2, 3, 4, 5, 6, 7)).filter(i -> i != 4)
+                 .forEachBatch(4, batch -> batches.add(new ArrayList<>(batch)));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3, 5), Arrays.asList(6, 7)), batches);
+
+        Integer[] big = new Integer[100000];
+        for (int i = 0; i < big.length; i++) { big[i] = i; }
+        long[] counts = new long[2];
+        TransDesc.fromArray(big).forEachBatchParallel(1000, batch -> {
+            assertTrue(batch.size() <= 1000);
+            long sum = 0;
+            for (Integer i : batch) { sum = sum + i; }
+            synchronized (counts) {
+                counts[0] = counts[0] + batch.size();
+                counts[1] = counts[1] + sum;
+            }
+        });
+        assertEquals(100000L, counts[0]);
+        assertEquals(99999L * 100000L / 2, counts[1]);
+    }
+
+    @Test public void generators() {
+        Function2<List<Long>,Long,List<Long>> gather = (accum, l) -> {
+            accum.add(l);
+            return accum;
+        };
+        int[] calls = new int[] { 0 };
+        assertEquals(Arrays.asList(3L, 4L, 5L),
+                     TransDesc.generate(() -> (long) calls[0]++).drop(3).take(3)
+                              .foldLeft(new ArrayList<>(), gather));
+        // The take is pushed down, so nothing more is generated.
+        assertEquals(6, calls[0]);
+
+        assertEquals(Arrays.asList(1L, 2L, 4L, 8L, 16L),
+                     TransDesc.iterate(1L, l -> l * 2).takeWhile(l -> l < 20)
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(Arrays.asList(8L, 16L),
+                     TransDesc.iterate(1L, l -> l * 2).take(5).drop(3)
+                              .foldLeft(new ArrayList<>(), gather));
+
+        assertEquals(Arrays.asList(10L, 7L, 4L, 1L),
+                     TransDesc.range(10, 0, -3).foldLeft(new ArrayList<>(), gather));
+        assertEquals(Arrays.asList(1000000000005L, 1000000000006L),
+                     TransDesc.range(0, Long.MAX_VALUE, 1).drop(1000000000005L).take(2)
+                              .foldLeft(new ArrayList<>(), gather));
+        assertEquals(Long.valueOf(999999L * 1000000L / 2),
+                     TransDesc.range(0, 1000000, 1)
+                              .groupByParallel(l -> 0, 0L, (Long s, Long l) -> s + l, Long::sum)
+                              .get(0));
+        assertEquals(0, TransDesc.range(5, 5, 1).foldLeft(0, (Integer c, Long l) -> c + 1)
+                                 .intValue());
+    }
+
+    @Test public void filterPlanning() {
+        int[] calls = new int[2];
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 0; i < 100; i++) { nums.add(i); }
+
+        // Declared: the cheap, selective filter goes first even though it was written second.
+        assertEquals(Arrays.asList(0, 50),
+                     TransDesc.from(nums)
+                              .filter(i -> {
+                                  calls[0] = calls[0] + 1;
+                                  return i % 2 == 0;
+                              }, 100, 0.5)
+                              .filter(i -> {
+                                  calls[1] = calls[1] + 1;
+                                  return i % 50 == 0;
+                              }, 1, 0.02)
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        assertEquals(2, calls[0]);
+        assertEquals(100, calls[1]);
+
+        // Measured on a sample of a big list.
+        List<Integer> big = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) { big.add(i); }
+        calls[0] = 0;
+        long count = TransDesc.from(big)
+                              .filterIndependent(i -> {
+                                  calls[0] = calls[0] + 1;
+                                  double d = i;
+                                  for (int j = 0; j < 200; j++) { d = Math.sqrt(d + j); }
+                                  return d >= 0;
+                              })
+                              .filterIndependent(i -> i % 100 == 0)
+                              .optimizeFilters()
+                              .foldLeft(0L, (Long c, Integer i) -> c + 1);
+        assertEquals(500L, count);
+        // The sample, plus the 1% that get past the cheap filter.
+        assertEquals(FILTER_SAMPLE + 500, calls[0]);
+
+        // A guard is never measured or moved, so the filter after it never sees a null.
+        List<String> withNulls = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            withNulls.add((i % 200 == 0) ? null : ((i & 1) == 1) ? "long" : "ab");
+        }
+        assertEquals(10000L, TransDesc.from(withNulls)
+                                      .filter(s -> s != null)
+                                      .filter(s -> s.length() > 3)
+                                      .optimizeFilters()
+                                      .foldLeft(0L, (Long c, String s) -> c + 1)
+                                      .longValue());
+        // Wrongly declared independent: it throws while being measured, so the run stays in order.
+        assertEquals(10000L, TransDesc.from(withNulls)
+                                      .filterIndependent(s -> s != null)
+                                      .filterIndependent(s -> s.length() > 3)
+                                      .optimizeFilters()
+                                      .foldLeft(0L, (Long c, String s) -> c + 1)
+                                      .longValue());
+
+        // forEach is never moved.
+        List<Integer> seen = new ArrayList<>();
+        Function1<Integer,Boolean> see = seen::add;
+        TransDesc.from(nums).forEach(see).filter(i -> i < 3, 0, 0.03).foldLeft(0, (a, b) -> a);
+        assertEquals(nums, seen);
+    }
+    private static final int FILTER_SAMPLE = 256;
+
+    @Test public void adaptiveFilters() {
+        // For the first half, the slow filter passes everything and the cheap one passes 1%, so
+        // the cheap one belongs in front.  For the second half, the cheap one passes everything
+        // and the slow one nothing, so the slow one belongs in front.  Either fixed order calls
+        // one of them on all 100000 items.
+        int[] calls = new int[2];
+        long count = TransDesc.range(0, 100000, 1)
+                              .filterIndependent(l -> {
+                                  calls[0] = calls[0] + 1;
+                                  double d = l;
+                                  for (int j = 0; j < 200; j++) { d = Math.sqrt(d + j); }
+                                  return (d >= 0) && (l < 50000);
+                              })
+                              .filterIndependent(l -> {
+                                  calls[1] = calls[1] + 1;
+                                  return (l >= 50000) || (l % 100 == 0);
+                              })
+                              .adaptiveFilters(1000, 10000)
+                              .foldLeft(0L, (Long c, Long l) -> c + 1);
+        assertEquals(500L, count);
+        // Each is called on every item for half the run, plus the measuring windows.
+        assertTrue("Slow filter called " + calls[0] + " times", calls[0] < 60000);
+        assertTrue("Cheap filter called " + calls[1] + " times", calls[1] < 60000);
+
+        // A guard isn't measured, so the filter after it never sees a null.
+        List<String> withNulls = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) { withNulls.add((i % 10 == 0) ? null : "x" + i); }
+        // Every tenth is null, and "x0" through "x99" are too short.
+        assertEquals(4410L, TransDesc.from(withNulls)
+                                     .filter(s -> s != null)
+                                     .filter(s -> s.length() > 3)
+                                     .adaptiveFilters(100, 1000)
+                                     .foldLeft(0L, (Long c, String s) -> c + 1)
+                                     .longValue());
+    }
+
+    @Test public void deepFlatMap() {
+        TransDesc<Integer> td = TransDesc.from(Arrays.asList(1, 2, 3));
+        for (int i = 0; i < 12; i++) {
+            td = td.flatMap(n -> Arrays.asList(n, n + 1));
+        }
+        // Each level doubles the items and adds 0 or 1, so the sum is 4096 * (1 + 2 + 3) plus
+        // 3 items * 12 levels * 2048 ones each.
+        assertEquals(Integer.valueOf(4096 * 6 + 3 * 12 * 2048),
+                     td.foldLeft(0, (Integer s, Integer n) -> s + n));
+
+        // Not random-access, so these are stepped through with iterators.
+        TransDesc<Integer> deep = TransDesc.from(Arrays.asList(1, 2));
+        for (int i = 0; i < 1000; i++) {
+            deep = deep.flatMap(Collections::singleton);
+        }
+        assertEquals(Integer.valueOf(3), deep.foldLeft(0, (Integer s, Integer n) -> s + n));
+
+        Function2<List<Integer>,Integer,List<Integer>> gather = (accum, n) -> {
+            accum.add(n);
+            return accum;
+        };
+        assertEquals(Arrays.asList(1, 2, 2, 3, 2, 3),
+                     TransDesc.from(Arrays.asList(1, 2))
+                              .flatMap(n -> Arrays.asList(n, n + 1))
+                              .flatMap(n -> Arrays.asList(n, n + 1))
+                              .take(6)
+                              .foldLeft(new ArrayList<>(), gather));
+    }
+
+    @Test public void primitiveFunctions() {
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 0; i < 100; i++) { nums.add(i); }
+        assertEquals(5000L, TransDesc.from(nums).where(i -> (i & 1) == 1).sumLong(i -> i * 2));
+        // Mixed with Function1 filters, hinted filters, and the planner.
+        assertEquals(Arrays.asList(15, 45, 75),
+                     TransDesc.from(nums).filter(i -> i % 3 == 0).where(i -> i % 5 == 0)
+                              .filter(i -> (i & 1) == 1, 1, 0.5).optimizeFilters()
+                              .foldLeft(new ArrayList<>(), (List<Integer> accum, Integer i) -> {
+                                  accum.add(i);
+                                  return accum;
+                              }));
+        assertEquals(Arrays.asList("3", "6", "9"),
+                     TransDesc.from(Arrays.asList("1", "2", "3"))
+                              .mapViaLong(Long::parseLong, l -> String.valueOf(l * 3))
+                              .foldLeft(new ArrayList<>(), (List<String> accum, String str) -> {
+                                  accum.add(str);
+                                  return accum;
+                              }));
+        assertEquals(0L, TransDesc.from(nums).where(i -> i < 0).sumLong(i -> i));
+    }
+
+    @Test public void compiledPlan() throws InterruptedException {
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) { nums.add(i); }
+        Function2<Long,Integer,Long> sum = (s, i) -> s + i;
+
+        TransDesc<Integer> td = TransDesc.from(nums).concatList(nums).drop(5000)
+                                         .filter(i -> (i & 1) == 0).map(i -> i * 2);
+        CompiledPlan<Integer> plan = td.compile();
+        assertTrue(plan.isShared());
+        long expected = td.foldLeft(0L, sum);
+        long[] results = new long[8];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++) {
+            int slot = t;
+            threads[t] = new Thread(() -> {
+                for (int r = 0; r < 50; r++) { results[slot] = plan.foldLeft(0L, sum); }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) { t.join(); }
+        for (long r : results) { assertEquals(expected, r); }
+
+        // A take after a filter can't be pushed into the source, so each run gets its own copy.
+        CompiledPlan<Integer> take = TransDesc.from(nums).filter(i -> i % 3 == 0).take(10)
+                                              .compile();
+        assertTrue(take.isShared());
+        for (int t = 0; t < threads.length; t++) {
+            int slot = t;
+            threads[t] = new Thread(() -> {
+                for (int r = 0; r < 50; r++) { results[slot] = take.foldLeft(0L, sum); }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) { t.join(); }
+        // 0 + 3 + ... + 27
+        for (long r : results) { assertEquals(135L, r); }
+
+        // One distinct over both parts of a concat, copied once per run.
+        CompiledPlan<Integer> distinct = TransDesc.from(Arrays.asList(1, 1, 2))
+                                                  .concatList(Arrays.asList(2, 3, 3)).distinct()
+                                                  .compile();
+        assertTrue(distinct.isShared());
+        assertEquals(Long.valueOf(6), distinct.foldLeft(0L, sum));
+        assertEquals(Long.valueOf(6), distinct.foldLeft(0L, sum));
+
+        // Ops with too much state to copy are compiled again for each run.
+        CompiledPlan<Long> moving = TransDesc.from(Arrays.asList(1, 2, 3, 4))
+                                             .movingSum(2, i -> i).compile();
+        assertFalse(moving.isShared());
+        assertEquals(Long.valueOf(15), moving.foldLeft(0L, Long::sum));
+        assertEquals(Long.valueOf(15), moving.foldLeft(0L, Long::sum));
+
+        // A spilled sort can't be shared, and the compile that found that out cleans up.
+        List<Long> longs = new ArrayList<>();
+        for (long l = 0; l < 5000; l++) { longs.add(4999 - l); }
+        long runFiles = spillRunFiles();
+        CompiledPlan<Long> spilled = TransDesc.from(longs)
+                                              .sorted(Comparator.naturalOrder(),
+                                                      SpillSerializer.LONG, 1000)
+                                              .compile();
+        assertFalse(spilled.isShared());
+        assertEquals(runFiles, spillRunFiles());
+        assertEquals(Long.valueOf(4999L * 5000 / 2), spilled.foldLeft(0L, Long::sum));
+        assertEquals(runFiles, spillRunFiles());
+    }
+
+    @Test public void checkpointedFold() throws IOException {
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) { nums.add(i); }
+        Path checkpoint = Files.createTempDirectory("TransDescTest").resolve("fold.ckpt");
+        long expected = TransDesc.from(nums).drop(10).filter(i -> i % 3 == 0)
+                                 .foldLeft(0L, (Long s, Integer i) -> s + i);
+
+        // Crash partway through, after some checkpoints were saved.
+        int[] calls = new int[] { 0 };
+        try {
+            TransDesc.from(nums).drop(10).filter(i -> i % 3 == 0)
+                     .foldLeftCheckpointed(0L, (Long s, Integer i) -> {
+                         calls[0]++;
+                         if (calls[0] == 2000) { throw new IllegalStateException("Crash"); }
+                         return s + i;
+                     }, checkpoint, 1000, SpillSerializer.LONG);
+            fail("Should have crashed");
+        } catch (IllegalStateException expectedCrash) {
+            assertTrue(Files.exists(checkpoint));
+        }
+
+        // Resuming only folds the items after the last checkpoint.
+        calls[0] = 0;
+        assertEquals(Long.valueOf(expected),
+                     TransDesc.from(nums).drop(10).filter(i -> i % 3 == 0)
+                              .foldLeftCheckpointed(0L, (Long s, Integer i) -> {
+                                  calls[0]++;
+                                  return s + i;
+                              }, checkpoint, 1000, SpillSerializer.LONG));
+        assertTrue(calls[0] < 2000);
+        assertFalse(Files.exists(checkpoint));
+
+        // Not a random-access source, and in parallel.
+        assertEquals(Long.valueOf(expected),
+                     TransDesc.from(new LinkedList<>(nums)).drop(10).filter(i -> i % 3 == 0)
+                              .foldLeftCheckpointedParallel(() -> 0L, (Long s, Integer i) -> s + i,
+                                                            Long::sum, checkpoint, 1000,
+                                                            SpillSerializer.LONG));
+        assertEquals(Long.valueOf(expected),
+                     TransDesc.from(nums).drop(10).filter(i -> i % 3 == 0)
+                              .foldLeftCheckpointedParallel(() -> 0L, (Long s, Integer i) -> s + i,
+                                                            Long::sum, checkpoint, 4096,
+                                                            SpillSerializer.LONG));
+        assertFalse(Files.exists(checkpoint));
+
+        try {
+            TransDesc.from(nums).distinct()
+                     .foldLeftCheckpointed(0L, (Long s, Integer i) -> s + i, checkpoint, 1000,
+                                           SpillSerializer.LONG);
+            fail("Distinct has state that isn't checkpointed");
+        } catch (IllegalStateException expectedEx) {
+            assertFalse(Files.exists(checkpoint));
+        }
+
+        // A checkpoint from another transformation, or another source, is refused.
+        calls[0] = 0;
+        try {
+            TransDesc.from(nums).drop(10).filter(i -> i % 3 == 0)
+                     .foldLeftCheckpointed(0L, (Long s, Integer i) -> {
+                         calls[0]++;
+                         if (calls[0] == 2000) { throw new IllegalStateException("Crash"); }
+                         return s + i;
+                     }, checkpoint, 1000, SpillSerializer.LONG);
+            fail("Should have crashed");
+        } catch (IllegalStateException expectedCrash) {
+            assertTrue(Files.exists(checkpoint));
+        }
+        try {
+            TransDesc.from(nums).drop(20).filter(i -> i % 3 == 0)
+                     .foldLeftCheckpointed(0L, (Long s, Integer i) -> s + i, checkpoint, 1000,
+                                           SpillSerializer.LONG);
+            fail("A different drop is a different transformation");
+        } catch (IllegalStateException expectedEx) {
+            assertTrue(expectedEx.getMessage().contains("different transformation"));
+        }
+        try {
+            TransDesc.from(new ArrayList<>(nums.subList(0, 9000))).drop(10).filter(i -> i % 3 == 0)
+                     .foldLeftCheckpointed(0L, (Long s, Integer i) -> s + i, checkpoint, 1000,
+                                           SpillSerializer.LONG);
+            fail("A smaller source is a different source");
+        } catch (IllegalStateException expectedEx) {
+            assertTrue(expectedEx.getMessage().contains("different source"));
+        }
+        Files.delete(checkpoint);
+        Files.delete(checkpoint.getParent());
+    }
+
+    @Test public void cancellation() {
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) { nums.add(i); }
+        Function2<Long,Integer,Long> sum = (s, i) -> s + i;
+
+        // The fold that gathers the input of a sort is checked too, serial or parallel, in memory
+        // or spilled.
+        int[] gathered = new int[] { 0 };
+        List<Function1<TransDesc<Long>,TransDesc<Long>>> sorts =
+                Arrays.asList(td -> td.sorted(Comparator.naturalOrder()),
+                              td -> td.sortedParallel(Comparator.naturalOrder()),
+                              td -> td.sorted(Comparator.naturalOrder(), SpillSerializer.LONG,
+                                              10000));
+        for (Function1<TransDesc<Long>,TransDesc<Long>> sort : sorts) {
+            CancelToken whileSorting = CancelToken.of();
+            gathered[0] = 0;
+            try {
+                sort.apply(TransDesc.from(nums)
+                                    .map(i -> {
+                                        synchronized (gathered) {
+                                            gathered[0]++;
+                                            if (gathered[0] == 5000) { whileSorting.cancel(); }
+                                        }
+                                        return (long) i;
+                                    }))
+                    .cancelWith(whileSorting)
+                    .foldLeft(0L, Long::sum);
+                fail("Should have been cancelled");
+            } catch (FoldCancelledException expected) {
+                assertTrue("Gathered " + gathered[0], gathered[0] < 50000);
+            }
+        }
+
+        // Not cancelled: same answer, and drops and takes still go to the source.
+        CancelToken token = CancelToken.of();
+        assertEquals(Long.valueOf(10 + 11 + 12),
+                     TransDesc.from(nums).cancelWith(token).map(i -> i).drop(10).take(3)
+                              .foldLeft(0L, sum));
+
+        token.cancel();
+        try {
+            TransDesc.from(nums).cancelWith(token).foldLeft(0L, sum);
+            fail("Should have been cancelled");
+        } catch (FoldCancelledException expected) {
+            // Stopped at the first item.
+        }
+
+        // Cancelled partway through.
+        CancelToken midway = CancelToken.of();
+        int[] seen = new int[] { 0 };
+        try {
+            TransDesc.from(nums).cancelWith(midway)
+                     .foldLeft(0L, (Long s, Integer i) -> {
+                         seen[0]++;
+                         if (i == 5000) { midway.cancel(); }
+                         return s + i;
+                     });
+            fail("Should have been cancelled");
+        } catch (FoldCancelledException expected) {
+            assertTrue(seen[0] <= 5001 + 1024);
+        }
+
+        // A deadline stops all the ranges of a parallel fold.
+        CancelToken deadline = CancelToken.withTimeout(50, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            TransDesc.from(nums).cancelWith(deadline)
+                     .groupByParallel(i -> i % 4, 0L, (Long s, Integer i) -> {
+                         try {
+                             Thread.sleep(1);
+                         } catch (InterruptedException ie) {
+                             throw new IllegalStateException(ie);
+                         }
+                         return s + i;
+                     }, Long::sum);
+            fail("Should have passed the deadline");
+        } catch (FoldCancelledException expected) {
+            assertTrue(deadline.isCancelled());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+    }
+
+    @Test public void collectAndStats() {
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 1; i <= 100000; i++) { nums.add(i); }
+
+        List<Integer> evens = TransDesc.from(nums).filter(i -> (i & 1) == 0).take(3)
+                                       .collect(ArrayList::new, List::add);
+        assertEquals(Arrays.asList(2, 4, 6), evens);
+        List<Integer> all = TransDesc.from(nums).collectParallel(ArrayList::new, List::add,
+                                                                 List::addAll);
+        assertEquals(nums, all);
+
+        LongStats ls = TransDesc.from(nums).longStats(i -> i);
+        LongStats lsp = TransDesc.from(nums).longStatsParallel(i -> i);
+        for (LongStats stats : Arrays.asList(ls, lsp)) {
+            assertEquals(100000L, stats.count());
+            assertEquals(5000050000L, stats.sum());
+            assertEquals(1L, stats.min());
+            assertEquals(100000L, stats.max());
+            assertEquals(50000.5, stats.mean(), 1e-9);
+            // (n^2 - 1) / 12 for 1 to n.
+            assertEquals((100000.0 * 100000 - 1) / 12, stats.variance(), 1e-3);
+            assertEquals((100000.0 * 100000 - 1) / 12 * 100000 / 99999, stats.sampleVariance(),
+                         1e-3);
+        }
+
+        DoubleStats ds = TransDesc.from(nums).doubleStats(i -> i / 2.0);
+        DoubleStats dsp = TransDesc.from(nums).doubleStatsParallel(i -> i / 2.0);
+        for (DoubleStats stats : Arrays.asList(ds, dsp)) {
+            assertEquals(100000L, stats.count());
+            assertEquals(0.5, stats.min(), 0);
+            assertEquals(50000.0, stats.max(), 0);
+            assertEquals(25000.25, stats.mean(), 1e-9);
+            assertEquals((100000.0 * 100000 - 1) / 48, stats.variance(), 1e-3);
+        }
+
+        LongStats empty = TransDesc.from(Collections.<Integer>emptyList()).longStats(i -> i);
+        assertEquals(0L, empty.count());
+        assertTrue(Double.isNaN(empty.mean()));
+        assertTrue(Double.isNaN(empty.variance()));
+    }
+
+    @Test public void columns() {
+        int n = 1000;
+        long[] ids = new long[n];
+        double[] prices = new double[n];
+        int[] regions = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            prices[i] = i / 10.0;
+            regions[i] = i % 4;
+        }
+        Columns cols = Columns.of(ids, prices, regions);
+        assertEquals(n, cols.count());
+
+        // Rows 500 through 999 with region 1: 501, 505, ... 997.
+        Columns sel = cols.whereDouble(1, p -> p >= 50).whereInt(2, r -> r == 1);
+        assertEquals(125, sel.count());
+        assertEquals(125L * (501 + 997) / 2, sel.sumLong(0));
+        assertEquals(125 * (50.1 + 99.7) / 2, sel.sumDouble(1), 1e-9);
+
+        int[] made = new int[] { 0 };
+        List<String> firstRows = sel.rows(row -> {
+            made[0]++;
+            return cols.getLong(0, row) + ":" + cols.getDouble(1, row);
+        }).drop(1).take(2).collect(ArrayList::new, List::add);
+        assertEquals(Arrays.asList("505:50.5", "509:50.9"), firstRows);
+        // Only the rows that were kept were made into items.
+        assertEquals(2, made[0]);
+
+        assertEquals(Long.valueOf(125L * (501 + 997) / 2),
+                     sel.rows(row -> ids[row])
+                        .groupByParallel(l -> 0, 0L, (Long s, Long l) -> s + l, Long::sum)
+                        .get(0));
+        assertEquals(0, cols.whereLong(0, l -> l < 0).count());
+        assertEquals(0, Columns.of(new long[0]).count());
+
+        try {
+            cols.whereLong(1, l -> true);
+            fail("Column 1 is doubles");
+        } catch (IllegalArgumentException expected) {
+            // Good.
+        }
+        try {
+            Columns.of(ids, new int[3]);
+            fail("Columns must be the same size");
+        } catch (IllegalArgumentException expected) {
+            // Good.
+        }
+    }
+
+    @Test public void encodedStrings() {
+        String[] cities = { "Paris", "Oslo", "Lima", "Oslo", "Paris", "Paris", "Kyiv", "Lima" };
+        List<String> cityList = new ArrayList<>();
+        long[] amounts = new long[800];
+        for (int i = 0; i < 800; i++) {
+            cityList.add(cities[i % cities.length]);
+            amounts[i] = i;
+        }
+        StringDictionary dict = StringDictionary.of();
+        EncodedStrings encoded = EncodedStrings.encode(cityList, dict);
+        assertEquals(4, dict.size());
+        assertEquals(0, dict.codeOf("Paris"));
+        assertEquals(-1, dict.codeOf("Rome"));
+        assertEquals("Lima", encoded.get(2));
+        assertEquals(Arrays.asList("Lima", "Oslo"),
+                     encoded.strings().drop(2).take(2).collect(ArrayList::new, List::add));
+
+        // A second column sharing the dictionary gets the same codes.
+        EncodedStrings other = EncodedStrings.encode(Arrays.asList("Oslo", "Rome"), dict);
+        assertEquals(encoded.code(1), other.code(0));
+        assertEquals(5, dict.size());
+
+        // Null is a string too, and codes still decode after the dictionary grows.
+        StringDictionary grown = StringDictionary.of();
+        assertEquals(-1, grown.codeOf(null));
+        assertEquals(0, grown.encode(null));
+        for (int i = 1; i < 100; i++) { assertEquals(i, grown.encode("s" + i)); }
+        assertEquals(0, grown.codeOf(null));
+        assertNull(grown.decode(0));
+        assertEquals("s99", grown.decode(99));
+        assertEquals(100, grown.size());
+
+        Columns cols = Columns.of(encoded, amounts);
+        assertEquals(300, cols.whereEquals(0, "Paris").count());
+        assertEquals(0, cols.whereEquals(0, "Rome").count());
+        assertEquals(0, cols.whereEquals(0, "Atlantis").count());
+        assertEquals(400, cols.whereIn(0, "Oslo", "Lima", "Atlantis").count());
+
+        Map<String,Long> counts = cols.countBy(0);
+        assertEquals(Arrays.asList("Paris", "Oslo", "Lima", "Kyiv"),
+                     new ArrayList<>(counts.keySet()));
+        assertEquals(Long.valueOf(300), counts.get("Paris"));
+        assertEquals(Long.valueOf(100), counts.get("Kyiv"));
+
+        Columns big = cols.whereLong(1, l -> l >= 400);
+        Map<String,Long> sums = big.whereIn(0, "Kyiv", "Oslo").sumLongBy(0, 1);
+        // Kyiv is at i % 8 == 6: 406, 414, ... 798.
+        assertEquals(Long.valueOf(50L * (406 + 798) / 2), sums.get("Kyiv"));
+        assertEquals(2, sums.size());
+        assertEquals(Arrays.asList("Oslo", "Kyiv"),
+                     big.whereIn(0, "Kyiv", "Oslo").distinctStrings(0));
+        assertEquals("Kyiv", cols.getString(0, 6));
+        assertEquals(Arrays.asList("Kyiv:6", "Kyiv:14"),
+                     cols.whereEquals(0, "Kyiv")
+                         .rows(row -> cols.getString(0, row) + ":" + cols.getLong(1, row))
+                         .take(2).collect(ArrayList::new, List::add));
+    }
+}